@@ -0,0 +1,83 @@
+package by.bsuir.medical_application.controller;
+
+import by.bsuir.medical_application.service.CareTeamDirectory;
+import by.bsuir.medical_application.service.ClusterMembership;
+import by.bsuir.medical_application.service.IndicatorsIngestService;
+import by.bsuir.medical_application.service.IndicatorsPersistenceService;
+import by.bsuir.medical_application.service.LatestIndicatorsCache;
+import by.bsuir.medical_application.service.MonitoringOwnershipService;
+import by.bsuir.medical_application.service.NotificationRetentionService;
+import by.bsuir.medical_application.service.NotificationWriter;
+import by.bsuir.medical_application.service.RecentVitalsBuffer;
+import by.bsuir.medical_application.service.UnreadCounterService;
+import by.bsuir.medical_application.service.VitalsChunkStore;
+import by.bsuir.medical_application.service.VitalsRollupService;
+import by.bsuir.medical_application.websocket.ConflatingSessionManager;
+import by.bsuir.medical_application.websocket.MedicalIndicatorsWebSocketController;
+import by.bsuir.medical_application.websocket.MonitoringRelay;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Статистика внутренних очередей и кэшей для администратора: глубина очередей, отброшенные элементы,
+ * размеры пачек и время последней записи
+ */
+@RestController
+@RequestMapping("/api/admin/monitoring")
+@RequiredArgsConstructor
+public class AdminMonitoringController {
+
+    private final MedicalIndicatorsWebSocketController medicalIndicatorsWebSocketController;
+    private final IndicatorsIngestService indicatorsIngestService;
+    private final IndicatorsPersistenceService indicatorsPersistenceService;
+    private final VitalsChunkStore vitalsChunkStore;
+    private final VitalsRollupService vitalsRollupService;
+    private final LatestIndicatorsCache latestIndicatorsCache;
+    private final RecentVitalsBuffer recentVitalsBuffer;
+    private final CareTeamDirectory careTeamDirectory;
+    private final NotificationWriter notificationWriter;
+    private final UnreadCounterService unreadCounterService;
+    private final NotificationRetentionService notificationRetentionService;
+    private final ConflatingSessionManager conflatingSessionManager;
+    private final ClusterMembership clusterMembership;
+    private final MonitoringOwnershipService monitoringOwnershipService;
+    private final MonitoringRelay monitoringRelay;
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("monitoring", medicalIndicatorsWebSocketController.getThreadInfo());
+        stats.put("ingest", indicatorsIngestService.getStats());
+        stats.put("indicatorsWriter", indicatorsPersistenceService.getStats());
+        stats.put("chunkStore", vitalsChunkStore.getStats());
+        stats.put("rollups", vitalsRollupService.getStats());
+        stats.put("latestCache", latestIndicatorsCache.getStats());
+        stats.put("recentBuffer", recentVitalsBuffer.getStats());
+        stats.put("careTeams", careTeamDirectory.getStats());
+        stats.put("notificationWriter", notificationWriter.getStats());
+        stats.put("unreadCounters", unreadCounterService.getStats());
+        stats.put("notificationRetention", notificationRetentionService.getStats());
+        stats.put("websocketSessions", conflatingSessionManager.getStats());
+        stats.put("cluster", clusterMembership.getStats());
+        stats.put("monitoringOwnership", monitoringOwnershipService.getStats());
+        stats.put("monitoringRelay", monitoringRelay.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/sessions")
+    public ResponseEntity<List<Map<String, Object>>> getSessionStats() {
+        return ResponseEntity.ok(conflatingSessionManager.getSessionStats());
+    }
+
+    @GetMapping("/notifications")
+    public ResponseEntity<Map<String, Object>> getNotificationWriterStats() {
+        return ResponseEntity.ok(notificationWriter.getStats());
+    }
+}
@@ -1,6 +1,6 @@
 package by.bsuir.medical_application.controller;
 
-import by.bsuir.medical_application.dto.NotificationDto;
+import by.bsuir.medical_application.dto.NotificationPageDto;
 import by.bsuir.medical_application.dto.UserResponseDto;
 import by.bsuir.medical_application.model.Department;
 import by.bsuir.medical_application.model.User;
@@ -10,7 +10,6 @@ import by.bsuir.medical_application.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -66,16 +65,10 @@ public class DepartmentCabinetController {
     }
     
     @GetMapping("/{departmentId}/notifications")
-    public ResponseEntity<List<NotificationDto>> getDepartmentNotifications(@PathVariable Long departmentId) {
-        List<User> doctors = userService.getDoctorsByDepartment(departmentId);
-        List<NotificationDto> allNotifications = new ArrayList<>();
-        
-        for (User doctor : doctors) {
-            List<NotificationDto> doctorNotifications = notificationService.getNotificationsForDoctor(doctor.getUserId());
-            allNotifications.addAll(doctorNotifications);
-        }
-        
-        return ResponseEntity.ok(allNotifications);
+    public ResponseEntity<NotificationPageDto> getDepartmentNotifications(@PathVariable Long departmentId,
+                                                                          @RequestParam(required = false) String before,
+                                                                          @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(notificationService.getDepartmentFeed(departmentId, before, limit));
     }
     
 }
@@ -1,15 +1,36 @@
 package by.bsuir.medical_application.controller;
 
+import by.bsuir.medical_application.dto.IndicatorsBatchResponseDto;
+import by.bsuir.medical_application.dto.IndicatorsStreamSummaryDto;
+import by.bsuir.medical_application.dto.IndicatorsSubmitResultDto;
 import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import by.bsuir.medical_application.dto.RecentVitalsDto;
+import by.bsuir.medical_application.dto.VitalsTrendDto;
 import by.bsuir.medical_application.model.Indicators;
+import by.bsuir.medical_application.model.VitalsCategory;
+import by.bsuir.medical_application.service.IndicatorsIngestService;
+import by.bsuir.medical_application.service.LatestIndicatorsCache;
+import by.bsuir.medical_application.service.RecentVitalsBuffer;
+import by.bsuir.medical_application.service.VitalsChunkStore;
+import by.bsuir.medical_application.service.VitalsRollupService;
 import by.bsuir.medical_application.utils.PatientIndicatorsGenerator;
+import by.bsuir.medical_application.utils.VitalsClassifier;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -17,6 +38,33 @@ import java.util.Map;
 @Slf4j
 public class MedicalIndicatorsController {
 
+    private static final int MAX_LATEST_LOOKUP_IDS = 1000;
+
+    private final IndicatorsIngestService indicatorsIngestService;
+    private final LatestIndicatorsCache latestIndicatorsCache;
+    private final RecentVitalsBuffer recentVitalsBuffer;
+    private final VitalsChunkStore vitalsChunkStore;
+    private final VitalsRollupService vitalsRollupService;
+    private final AsyncTaskExecutor streamExecutor;
+    private final long streamTimeoutMillis;
+
+    public MedicalIndicatorsController(IndicatorsIngestService indicatorsIngestService,
+                                       LatestIndicatorsCache latestIndicatorsCache,
+                                       RecentVitalsBuffer recentVitalsBuffer,
+                                       VitalsChunkStore vitalsChunkStore,
+                                       VitalsRollupService vitalsRollupService,
+                                       @Value("${indicators.ingest.stream-timeout-millis:3600000}") long streamTimeoutMillis) {
+        this.indicatorsIngestService = indicatorsIngestService;
+        this.latestIndicatorsCache = latestIndicatorsCache;
+        this.recentVitalsBuffer = recentVitalsBuffer;
+        this.vitalsChunkStore = vitalsChunkStore;
+        this.vitalsRollupService = vitalsRollupService;
+        this.streamTimeoutMillis = streamTimeoutMillis;
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("indicators-stream-");
+        executor.setVirtualThreads(true);
+        this.streamExecutor = executor;
+    }
+
     /**
      * Принимает медицинские показатели от мобильного приложения
      * @param indicatorsDto данные показателей
@@ -30,47 +78,65 @@ public class MedicalIndicatorsController {
                 indicatorsDto.getHeartrate(), indicatorsDto.getTemperature(), 
                 indicatorsDto.getSpo2(), indicatorsDto.getPatientId());
         
-        if (indicatorsDto.getTimestamp() == null) {
-            indicatorsDto.setTimestamp(LocalDateTime.now());
-        }
+        IndicatorsSubmitResultDto result = indicatorsIngestService.ingest(indicatorsDto);
         
         Map<String, Object> response = new HashMap<>();
         response.put("status", "success");
-        response.put("message", "Medical indicators received successfully");
-        response.put("timestamp", indicatorsDto.getTimestamp());
-        response.put("patientId", indicatorsDto.getPatientId());
-        
-        String category = indicatorsDto.getCategory();
-        response.put("category", category);
-        response.put("criticalStatus", indicatorsDto.getCriticalStatus());
-        
-        if ("Incompatible with Life".equals(category)) {
-            response.put("alert", true);
-            response.put("alertLevel", "EMERGENCY");
-            response.put("message", "INCOMPATIBLE WITH LIFE! " + indicatorsDto.getCriticalStatus());
-            log.error("INCOMPATIBLE WITH LIFE indicators detected for patient {}: {}", 
-                    indicatorsDto.getPatientId(), indicatorsDto.getCriticalStatus());
-        } else if ("Critical".equals(category)) {
-            response.put("alert", true);
-            response.put("alertLevel", "CRITICAL");
-            response.put("message", "Critical indicators detected! " + indicatorsDto.getCriticalStatus());
-            log.warn("Critical medical indicators detected for patient {}: {}", 
-                    indicatorsDto.getPatientId(), indicatorsDto.getCriticalStatus());
-        } else if ("Requires Attention".equals(category)) {
-            response.put("alert", true);
-            response.put("alertLevel", "WARNING");
-            response.put("message", "Indicators require attention: " + indicatorsDto.getCriticalStatus());
-            log.info("Medical indicators require attention for patient {}: {}", 
-                    indicatorsDto.getPatientId(), indicatorsDto.getCriticalStatus());
-        } else {
-            response.put("alert", false);
-            response.put("alertLevel", "NORMAL");
-            response.put("message", "Normal indicators received");
+        response.put("timestamp", result.getTimestamp());
+        response.put("patientId", result.getPatientId());
+        response.put("category", result.getCategory());
+        response.put("criticalStatus", result.getCriticalStatus());
+        response.put("alert", result.isAlert());
+        response.put("alertLevel", result.getAlertLevel());
+        
+        switch (result.getAlertLevel()) {
+            case EMERGENCY -> {
+                response.put("message", "INCOMPATIBLE WITH LIFE! " + result.getCriticalStatus());
+                log.error("INCOMPATIBLE WITH LIFE indicators detected for patient {}: {}", 
+                        result.getPatientId(), result.getCriticalStatus());
+            }
+            case CRITICAL -> {
+                response.put("message", "Critical indicators detected! " + result.getCriticalStatus());
+                log.warn("Critical medical indicators detected for patient {}: {}", 
+                        result.getPatientId(), result.getCriticalStatus());
+            }
+            case WARNING -> {
+                response.put("message", "Indicators require attention: " + result.getCriticalStatus());
+                log.info("Medical indicators require attention for patient {}: {}", 
+                        result.getPatientId(), result.getCriticalStatus());
+            }
+            default -> response.put("message", "Normal indicators received");
         }
 
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Принимает пачку показателей от шлюза отделения за один запрос
+     * @param readings показатели нескольких пациентов
+     * @return результат по каждому показателю и сводка уровней тревоги
+     */
+    @PostMapping("/submit-batch")
+    public ResponseEntity<IndicatorsBatchResponseDto> submitIndicatorsBatch(
+            @RequestBody List<MedicalIndicatorsDto> readings) {
+        return ResponseEntity.ok(indicatorsIngestService.ingestBatch(readings));
+    }
+    
+    /**
+     * Принимает непрерывный поток показателей от шлюза в формате NDJSON (по одному объекту на строку).
+     * Каждый показатель обрабатывается сразу после чтения, ответ отправляется после закрытия потока.
+     * Поток читается асинхронно в виртуальном потоке, поэтому долгая загрузка не занимает поток Tomcat.
+     * @param request запрос с телом application/x-ndjson
+     * @return сводка по принятому потоку
+     */
+    @PostMapping(value = "/submit-stream", consumes = "application/x-ndjson")
+    public WebAsyncTask<ResponseEntity<IndicatorsStreamSummaryDto>> submitIndicatorsStream(HttpServletRequest request) throws IOException {
+        log.info("Opened medical indicators stream from {}", request.getRemoteAddr());
+        InputStream inputStream = request.getInputStream();
+        return new WebAsyncTask<>(streamTimeoutMillis, streamExecutor,
+                () -> ResponseEntity.ok(indicatorsIngestService.ingestStream(inputStream)));
+    }
+    
     /**
      * Генерирует случайные медицинские показатели для тестирования
      * @param includeCritical включить ли критические значения
@@ -97,28 +163,82 @@ public class MedicalIndicatorsController {
     }
     
     /**
-     * Получает последние показатели пациента (заглушка для демонстрации)
+     * Получает последние показатели пациента из общего кэша (при промахе — из базы данных)
      * @param patientId ID пациента
-     * @return последние показатели
+     * @return последние показатели или 404, если данных по пациенту нет
      */
     @GetMapping("/patient/{patientId}/latest")
     public ResponseEntity<MedicalIndicatorsDto> getLatestIndicators(@PathVariable Long patientId) {
-        
-        Indicators indicators = PatientIndicatorsGenerator.createRandomIndicators();
-        indicators.setPatientId(patientId);
-        
-        MedicalIndicatorsDto dto = MedicalIndicatorsDto.builder()
-                .heartrate(indicators.getHeartrate())
-                .temperature(indicators.getTemperature())
-                .spo2(indicators.getSpo2())
-                .timestamp(indicators.getTimestamp())
-                .patientId(indicators.getPatientId())
-                .build();
-        
-        log.info("Retrieved latest indicators for patient {}: heartrate={}, temperature={}, spo2={}", 
-                patientId, dto.getHeartrate(), dto.getTemperature(), dto.getSpo2());
-        
-        return ResponseEntity.ok(dto);
+        return latestIndicatorsCache.getLatest(patientId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Возвращает последние показатели для нескольких пациентов одним запросом
+     * @param ids ID пациентов
+     * @return показатели по ID пациента; пациенты без данных в ответ не попадают
+     */
+    @GetMapping("/patients/latest")
+    public ResponseEntity<Map<Long, MedicalIndicatorsDto>> getLatestIndicatorsForPatients(
+            @RequestParam List<Long> ids) {
+        if (ids.size() > MAX_LATEST_LOOKUP_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(latestIndicatorsCache.getLatest(ids));
+    }
+    
+    /**
+     * Возвращает последние отсчёты пациента из кольцевого буфера для спарклайнов мониторинга
+     * @param patientId ID пациента
+     * @param seconds глубина окна в секундах
+     * @return отсчёты в порядке возрастания времени или 404, если пациент не отслеживается
+     */
+    @GetMapping("/patient/{patientId}/recent")
+    public ResponseEntity<RecentVitalsDto> getRecentIndicators(@PathVariable Long patientId,
+                                                               @RequestParam(defaultValue = "300") long seconds) {
+        return recentVitalsBuffer.getRecent(patientId, seconds)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Возвращает историю показателей пациента за период из сжатого хранилища
+     * @param patientId ID пациента
+     * @param from начало периода
+     * @param to конец периода (по умолчанию — текущее время)
+     * @return показатели в порядке возрастания времени
+     */
+    @GetMapping("/patient/{patientId}/history")
+    public ResponseEntity<List<MedicalIndicatorsDto>> getIndicatorsHistory(
+            @PathVariable Long patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime rangeEnd = to != null ? to : LocalDateTime.now();
+        return ResponseEntity.ok(vitalsChunkStore.readRange(patientId, from, rangeEnd));
+    }
+    
+    /**
+     * Возвращает тренд показателей пациента (min/max/mean/last по интервалам).
+     * Разрешение (1m/5m/1h) укрупняется, только пока период не уложится в maxPoints точек
+     * (см. {@link by.bsuir.medical_application.model.RollupResolution#forRange}).
+     * @param patientId ID пациента
+     * @param from начало периода
+     * @param to конец периода (по умолчанию — текущее время)
+     * @param maxPoints желаемое максимальное количество точек
+     * @return агрегаты показателей с выбранным разрешением
+     */
+    @GetMapping("/patient/{patientId}/trend")
+    public ResponseEntity<VitalsTrendDto> getIndicatorsTrend(
+            @PathVariable Long patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "500") int maxPoints) {
+        LocalDateTime rangeEnd = to != null ? to : LocalDateTime.now();
+        if (rangeEnd.isBefore(from)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(vitalsRollupService.getTrend(patientId, from, rangeEnd, maxPoints));
     }
     
     /**
@@ -132,21 +252,22 @@ public class MedicalIndicatorsController {
         
         Map<String, Object> analysis = new HashMap<>();
         
-        String heartrateStatus = analyzeHeartrate(indicatorsDto.getHeartrate());
+        String heartrateStatus = VitalsClassifier.heartrateStatus(indicatorsDto.getHeartrate());
         analysis.put("heartrateStatus", heartrateStatus);
         
-        String temperatureStatus = analyzeTemperature(indicatorsDto.getTemperature());
+        String temperatureStatus = VitalsClassifier.temperatureStatus(indicatorsDto.getTemperature());
         analysis.put("temperatureStatus", temperatureStatus);
         
-        String spo2Status = analyzeSpo2(indicatorsDto.getSpo2());
+        String spo2Status = VitalsClassifier.spo2Status(indicatorsDto.getSpo2());
         analysis.put("spo2Status", spo2Status);
         
-        String overallStatus = determineOverallStatus(indicatorsDto);
+        VitalsCategory category = indicatorsDto.classify();
+        String overallStatus = determineOverallStatus(category);
         analysis.put("overallStatus", overallStatus);
-        analysis.put("category", indicatorsDto.getCategory());
-        analysis.put("isCritical", indicatorsDto.isCritical());
-        analysis.put("requiresAttention", indicatorsDto.requiresAttention());
-        analysis.put("recommendations", generateRecommendations(indicatorsDto));
+        analysis.put("category", category.getLabel());
+        analysis.put("isCritical", category.ordinal() >= VitalsCategory.CRITICAL.ordinal());
+        analysis.put("requiresAttention", category == VitalsCategory.REQUIRES_ATTENTION);
+        analysis.put("recommendations", generateRecommendations(indicatorsDto, category));
         
         log.info("Analyzed indicators for patient {}: overall status = {}", 
                 indicatorsDto.getPatientId(), overallStatus);
@@ -154,85 +275,58 @@ public class MedicalIndicatorsController {
         return ResponseEntity.ok(analysis);
     }
     
-    private String analyzeHeartrate(Integer heartrate) {
-        if (heartrate == null) return "No data";
-        if (heartrate == 0 || heartrate > 250) return "Incompatible with Life";
-        if (heartrate < 50) return "Critical - Bradycardia";
-        if (heartrate < 60) return "Requires Attention - Low";
-        if (heartrate <= 100) return "Normal";
-        if (heartrate <= 120) return "Requires Attention - Elevated";
-        if (heartrate <= 130) return "Critical - Tachycardia";
-        return "Critical - Severe Tachycardia";
-    }
-    
-    private String analyzeTemperature(Double temperature) {
-        if (temperature == null) return "No data";
-        if (temperature > 41.5 || temperature < 28.0) return "Incompatible with Life";
-        if (temperature < 35.0) return "Critical - Hypothermia";
-        if (temperature < 36.1) return "Critical - Low";
-        if (temperature <= 37.0) return "Normal";
-        if (temperature <= 38.0) return "Requires Attention - Elevated";
-        if (temperature <= 38.1) return "Critical - Hyperthermia";
-        return "Critical - Severe Hyperthermia";
-    }
-    
-    private String analyzeSpo2(Integer spo2) {
-        if (spo2 == null) return "No data";
-        if (spo2 < 70) return "Incompatible with Life";
-        if (spo2 <= 90) return "Critical - Severe hypoxia";
-        if (spo2 <= 94) return "Requires Attention - Low";
-        return "Normal";
-    }
-    
-    private String determineOverallStatus(MedicalIndicatorsDto indicators) {
-        String category = indicators.getCategory();
-        
+    private String determineOverallStatus(VitalsCategory category) {
         switch (category) {
-            case "Incompatible with Life":
+            case INCOMPATIBLE_WITH_LIFE:
                 return "INCOMPATIBLE WITH LIFE - Immediate emergency response required";
-            case "Critical":
+            case CRITICAL:
                 return "CRITICAL - Immediate medical attention required";
-            case "Requires Attention":
+            case REQUIRES_ATTENTION:
                 return "REQUIRES ATTENTION - Monitor closely and consider medical consultation";
             default:
                 return "NORMAL - All indicators within normal range";
         }
     }
     
-    private String generateRecommendations(MedicalIndicatorsDto indicators) {
+    private String generateRecommendations(MedicalIndicatorsDto indicators, VitalsCategory category) {
         StringBuilder recommendations = new StringBuilder();
-        String category = indicators.getCategory();
+        VitalsCategory heartrateCategory = indicators.getHeartrate() != null
+                ? VitalsClassifier.heartrateCategory(indicators.getHeartrate()) : VitalsCategory.NORMAL;
+        VitalsCategory temperatureCategory = indicators.getTemperature() != null
+                ? VitalsClassifier.temperatureCategory(VitalsClassifier.toTenths(indicators.getTemperature())) : VitalsCategory.NORMAL;
+        VitalsCategory spo2Category = indicators.getSpo2() != null
+                ? VitalsClassifier.spo2Category(indicators.getSpo2()) : VitalsCategory.NORMAL;
         
         switch (category) {
-            case "Incompatible with Life":
+            case INCOMPATIBLE_WITH_LIFE:
                 recommendations.append("• EMERGENCY: Call Emergency Service immediately! ");
                 recommendations.append("• Begin emergency life support procedures. ");
                 recommendations.append("• Prepare for emergency medical transport. ");
                 break;
                 
-            case "Critical":
+            case CRITICAL:
                 recommendations.append("• SEEK IMMEDIATE MEDICAL ATTENTION. ");
                 recommendations.append("• Do not delay - go to emergency room. ");
-                if (indicators.getHeartrate() != null && (indicators.getHeartrate() < 50 || indicators.getHeartrate() > 130)) {
+                if (heartrateCategory == VitalsCategory.CRITICAL) {
                     recommendations.append("• Monitor heart rate continuously. ");
                 }
-                if (indicators.getTemperature() != null && (indicators.getTemperature() < 35.0 || indicators.getTemperature() > 38.1)) {
+                if (temperatureCategory == VitalsCategory.CRITICAL) {
                     recommendations.append("• Monitor temperature and provide appropriate cooling/heating. ");
                 }
-                if (indicators.getSpo2() != null && indicators.getSpo2() <= 90) {
+                if (spo2Category == VitalsCategory.CRITICAL) {
                     recommendations.append("• Provide supplemental oxygen if available. ");
                 }
                 break;
                 
-            case "Requires Attention":
+            case REQUIRES_ATTENTION:
                 recommendations.append("• Monitor closely and consider medical consultation. ");
-                if (indicators.getHeartrate() != null && ((indicators.getHeartrate() >= 50 && indicators.getHeartrate() < 60) || (indicators.getHeartrate() > 100 && indicators.getHeartrate() <= 120))) {
+                if (heartrateCategory == VitalsCategory.REQUIRES_ATTENTION) {
                     recommendations.append("• Rest and avoid strenuous activity. ");
                 }
-                if (indicators.getTemperature() != null && indicators.getTemperature() >= 37.1 && indicators.getTemperature() <= 38.0) {
+                if (temperatureCategory == VitalsCategory.REQUIRES_ATTENTION) {
                     recommendations.append("• Stay hydrated and rest. Consider fever-reducing medication. ");
                 }
-                if (indicators.getSpo2() != null && indicators.getSpo2() >= 91 && indicators.getSpo2() <= 94) {
+                if (spo2Category == VitalsCategory.REQUIRES_ATTENTION) {
                     recommendations.append("• Ensure adequate ventilation. Monitor breathing. ");
                 }
                 break;
@@ -1,6 +1,8 @@
 package by.bsuir.medical_application.controller;
 
 import by.bsuir.medical_application.dto.NotificationDto;
+import by.bsuir.medical_application.dto.NotificationPageDto;
+import by.bsuir.medical_application.model.NotificationType;
 import by.bsuir.medical_application.service.NotificationService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -22,6 +24,14 @@ public class NotificationController {
         return ResponseEntity.ok(notificationService.getNotificationsForUser(userId));
     }
     
+    @GetMapping("/user/{userId}/feed")
+    public ResponseEntity<NotificationPageDto> getNotificationFeed(@PathVariable Long userId,
+                                                                   @RequestParam(required = false) String before,
+                                                                   @RequestParam(required = false) String since,
+                                                                   @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(notificationService.getFeed(userId, before, since, limit));
+    }
+    
     @GetMapping("/doctor/{doctorId}")
     public ResponseEntity<List<NotificationDto>> getNotificationsForDoctor(@PathVariable Long doctorId) {
         return ResponseEntity.ok(notificationService.getNotificationsForDoctor(doctorId));
@@ -33,16 +43,32 @@ public class NotificationController {
     }
     
     @PostMapping("/{notificationId}/read")
-    public ResponseEntity<Void> markNotificationAsRead(@PathVariable Long notificationId,
-                                                       @RequestParam Long userId) {
-        notificationService.markNotificationAsRead(notificationId, userId);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<Integer> markNotificationAsRead(@PathVariable Long notificationId,
+                                                          @RequestParam Long userId) {
+        return ResponseEntity.ok(notificationService.markNotificationAsRead(notificationId, userId));
     }
     
     @PostMapping("/user/{userId}/read-all")
-    public ResponseEntity<Void> markAllNotificationsAsRead(@PathVariable Long userId) {
-        notificationService.markAllAsRead(userId);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<Integer> markAllNotificationsAsRead(@PathVariable Long userId) {
+        return ResponseEntity.ok(notificationService.markAllAsRead(userId));
+    }
+    
+    @PostMapping("/user/{userId}/read-up-to")
+    public ResponseEntity<Integer> markNotificationsAsReadUpTo(@PathVariable Long userId,
+                                                               @RequestParam String cursor) {
+        return ResponseEntity.ok(notificationService.markReadUpTo(userId, cursor));
+    }
+    
+    @PostMapping("/user/{userId}/read-by-type")
+    public ResponseEntity<Integer> markNotificationsAsReadByType(@PathVariable Long userId,
+                                                                 @RequestParam NotificationType type) {
+        return ResponseEntity.ok(notificationService.markReadByType(userId, type));
+    }
+    
+    @PostMapping("/user/{userId}/read-by-patient")
+    public ResponseEntity<Integer> markNotificationsAsReadByPatient(@PathVariable Long userId,
+                                                                    @RequestParam Long patientId) {
+        return ResponseEntity.ok(notificationService.markReadByPatient(userId, patientId));
     }
     
     @GetMapping("/user/{userId}/unread-count")
@@ -0,0 +1,23 @@
+package by.bsuir.medical_application.dto;
+
+import by.bsuir.medical_application.model.AlertLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndicatorsBatchResponseDto {
+    private int received;
+    private int accepted;
+    private int rejected;
+    private AlertLevel highestAlertLevel;
+    private Map<AlertLevel, Integer> alertLevelCounts;
+    private List<IndicatorsSubmitResultDto> results;
+}
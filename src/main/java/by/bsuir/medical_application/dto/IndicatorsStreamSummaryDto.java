@@ -0,0 +1,25 @@
+package by.bsuir.medical_application.dto;
+
+import by.bsuir.medical_application.model.AlertLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndicatorsStreamSummaryDto {
+    private long received;
+    private long accepted;
+    private long rejected;
+    private AlertLevel highestAlertLevel;
+    private Map<AlertLevel, Long> alertLevelCounts;
+    private List<IndicatorsSubmitResultDto> rejections;
+    private boolean completed;
+    private String error;
+}
@@ -0,0 +1,26 @@
+package by.bsuir.medical_application.dto;
+
+import by.bsuir.medical_application.model.AlertLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndicatorsSubmitResultDto {
+    private int index;
+    private Long patientId;
+    private boolean accepted;
+    private LocalDateTime timestamp;
+    private String category;
+    private String criticalStatus;
+    private AlertLevel alertLevel;
+    private boolean alert;
+    private Map<String, String> errors;
+}
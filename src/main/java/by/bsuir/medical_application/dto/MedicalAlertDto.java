@@ -0,0 +1,27 @@
+package by.bsuir.medical_application.dto;
+
+import by.bsuir.medical_application.model.AlertLevel;
+import by.bsuir.medical_application.model.AlertTransition;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MedicalAlertDto {
+    private String type;
+    private Long patientId;
+    private String category;
+    private AlertLevel alertLevel;
+    private AlertTransition transition;
+    private String message;
+    private MedicalIndicatorsDto indicators;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,19 @@
+package by.bsuir.medical_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationPageDto {
+    private List<NotificationDto> items;
+    private String newestCursor;
+    private String oldestCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,15 @@
+package by.bsuir.medical_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationPushDto {
+    private NotificationDto notification;
+    private long unreadCount;
+}
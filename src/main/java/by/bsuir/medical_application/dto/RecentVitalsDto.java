@@ -0,0 +1,18 @@
+package by.bsuir.medical_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecentVitalsDto {
+    private Long patientId;
+    private long[] timestamps;
+    private Integer[] heartrate;
+    private Double[] temperature;
+    private Integer[] spo2;
+}
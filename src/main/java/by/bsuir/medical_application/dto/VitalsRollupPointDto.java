@@ -0,0 +1,32 @@
+package by.bsuir.medical_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VitalsRollupPointDto {
+    private LocalDateTime bucketStart;
+    private long sampleCount;
+
+    private Integer heartrateMin;
+    private Integer heartrateMax;
+    private Double heartrateMean;
+    private Integer heartrateLast;
+
+    private Double temperatureMin;
+    private Double temperatureMax;
+    private Double temperatureMean;
+    private Double temperatureLast;
+
+    private Integer spo2Min;
+    private Integer spo2Max;
+    private Double spo2Mean;
+    private Integer spo2Last;
+}
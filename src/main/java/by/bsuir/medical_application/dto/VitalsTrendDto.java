@@ -0,0 +1,22 @@
+package by.bsuir.medical_application.dto;
+
+import by.bsuir.medical_application.model.RollupResolution;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VitalsTrendDto {
+    private Long patientId;
+    private RollupResolution resolution;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private List<VitalsRollupPointDto> points;
+}
@@ -0,0 +1,26 @@
+package by.bsuir.medical_application.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Сводный кадр палаты. При рассылке readings не сериализуется заново: в кадр подставляется JSON
+ * показателей, уже сериализованный для топика пациента.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WardVitalsFrameDto {
+    private Long departmentId;
+    private String watchId;
+    private LocalDateTime timestamp;
+    private List<MedicalIndicatorsDto> readings;
+}
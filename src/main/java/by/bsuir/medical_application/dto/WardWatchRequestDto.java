@@ -0,0 +1,19 @@
+package by.bsuir.medical_application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WardWatchRequestDto {
+    private String watchId;
+    private List<Long> add;
+    private List<Long> remove;
+    private boolean replace;
+}
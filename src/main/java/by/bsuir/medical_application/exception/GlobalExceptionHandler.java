@@ -5,6 +5,9 @@ import by.bsuir.medical_application.dto.ValidationErrorResponse;
 import by.bsuir.medical_application.exceptions.AccountCreatingException;
 import by.bsuir.medical_application.exceptions.AccountUpdatingException;
 import by.bsuir.medical_application.exceptions.DepartmentCreatingException;
+import by.bsuir.medical_application.exceptions.IndicatorsIngestException;
+import by.bsuir.medical_application.exceptions.IndicatorsOverloadedException;
+import by.bsuir.medical_application.exceptions.InvalidCursorException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -55,6 +58,39 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(error);
     }
 
+    @ExceptionHandler(IndicatorsIngestException.class)
+    public ResponseEntity<ErrorResponse> handleIndicatorsIngestException(IndicatorsIngestException ex) {
+        log.error("Indicators ingest failed: {}", ex.getMessage());
+        ErrorResponse error = ErrorResponse.builder()
+                .message(ex.getMessage())
+                .timestamp(Instant.now())
+                .status(HttpStatus.BAD_REQUEST.value())
+                .build();
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    @ExceptionHandler(IndicatorsOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleIndicatorsOverloadedException(IndicatorsOverloadedException ex) {
+        log.warn("Indicators rejected: {}", ex.getMessage());
+        ErrorResponse error = ErrorResponse.builder()
+                .message(ex.getMessage())
+                .timestamp(Instant.now())
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidCursorException(InvalidCursorException ex) {
+        log.error("Invalid cursor: {}", ex.getMessage());
+        ErrorResponse error = ErrorResponse.builder()
+                .message(ex.getMessage())
+                .timestamp(Instant.now())
+                .status(HttpStatus.BAD_REQUEST.value())
+                .build();
+        return ResponseEntity.badRequest().body(error);
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ErrorResponse> handleBadCredentialsException(BadCredentialsException ex) {
         log.error("Authentication failed: {}", ex.getMessage());
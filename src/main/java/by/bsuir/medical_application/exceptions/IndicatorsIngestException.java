@@ -0,0 +1,7 @@
+package by.bsuir.medical_application.exceptions;
+
+public class IndicatorsIngestException extends RuntimeException {
+    public IndicatorsIngestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package by.bsuir.medical_application.exceptions;
+
+public class IndicatorsOverloadedException extends RuntimeException {
+    public IndicatorsOverloadedException(String message) {
+        super(message);
+    }
+}
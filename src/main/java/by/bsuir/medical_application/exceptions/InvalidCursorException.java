@@ -0,0 +1,7 @@
+package by.bsuir.medical_application.exceptions;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
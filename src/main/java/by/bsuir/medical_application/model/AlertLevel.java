@@ -0,0 +1,19 @@
+package by.bsuir.medical_application.model;
+
+/**
+ * Уровень тревоги по показателям пациента, упорядочен по возрастанию серьёзности
+ */
+public enum AlertLevel {
+    NORMAL,
+    WARNING,
+    CRITICAL,
+    EMERGENCY;
+
+    public boolean isAlert() {
+        return this != NORMAL;
+    }
+
+    public AlertLevel max(AlertLevel other) {
+        return other != null && other.ordinal() > ordinal() ? other : this;
+    }
+}
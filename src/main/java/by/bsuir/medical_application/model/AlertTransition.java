@@ -0,0 +1,20 @@
+package by.bsuir.medical_application.model;
+
+/**
+ * Переход состояния тревоги пациента после очередного измерения
+ */
+public enum AlertTransition {
+    NONE,
+    RAISED,
+    ESCALATED,
+    REPEATED,
+    DOWNGRADED,
+    CLEARED;
+
+    /**
+     * @return true если о переходе нужно уведомить врача
+     */
+    public boolean requiresNotification() {
+        return this == RAISED || this == ESCALATED || this == REPEATED;
+    }
+}
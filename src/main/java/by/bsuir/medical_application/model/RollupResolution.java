@@ -0,0 +1,60 @@
+package by.bsuir.medical_application.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разрешение агрегатов показателей, упорядочено от мелкого к крупному
+ */
+public enum RollupResolution {
+    MINUTE_1("1m", TimeUnit.MINUTES.toMillis(1)),
+    MINUTE_5("5m", TimeUnit.MINUTES.toMillis(5)),
+    HOUR_1("1h", TimeUnit.HOURS.toMillis(1));
+
+    private final String code;
+    private final long stepMillis;
+
+    RollupResolution(String code, long stepMillis) {
+        this.code = code;
+        this.stepMillis = stepMillis;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    public long bucketStart(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, stepMillis) * stepMillis;
+    }
+
+    /**
+     * Выбирает разрешение для периода: укрупняет шаг ровно настолько, насколько нужно, чтобы период уложился
+     * в бюджет точек, то есть берёт самое подробное из укладывающихся. Если ни одно не укладывается — самое крупное.
+     * <p>
+     * Буквальное «самое крупное разрешение, удовлетворяющее бюджету» здесь не подходит: бюджет — верхняя граница,
+     * и ей почти всегда удовлетворяет часовое разрешение, так что график за полчаса свёлся бы к одной точке.
+     * Бюджет задаёт допустимую плотность графика, а выбор крупнее необходимого только теряет подробность,
+     * не уменьшая число читаемых строк ниже бюджета.
+     */
+    public static RollupResolution forRange(long rangeMillis, int maxPoints) {
+        for (RollupResolution resolution : values()) {
+            long points = rangeMillis / resolution.stepMillis + 1;
+            if (points <= maxPoints) {
+                return resolution;
+            }
+        }
+        return HOUR_1;
+    }
+
+    public static RollupResolution fromCode(String code) {
+        for (RollupResolution resolution : values()) {
+            if (resolution.code.equals(code)) {
+                return resolution;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rollup resolution: " + code);
+    }
+}
@@ -0,0 +1,35 @@
+package by.bsuir.medical_application.model;
+
+/**
+ * Категория показателей пациента, упорядочена по возрастанию серьёзности
+ */
+public enum VitalsCategory {
+    NORMAL("Normal", AlertLevel.NORMAL),
+    REQUIRES_ATTENTION("Requires Attention", AlertLevel.WARNING),
+    CRITICAL("Critical", AlertLevel.CRITICAL),
+    INCOMPATIBLE_WITH_LIFE("Incompatible with Life", AlertLevel.EMERGENCY);
+
+    private final String label;
+    private final AlertLevel alertLevel;
+
+    VitalsCategory(String label, AlertLevel alertLevel) {
+        this.label = label;
+        this.alertLevel = alertLevel;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public AlertLevel getAlertLevel() {
+        return alertLevel;
+    }
+
+    public boolean isNormal() {
+        return this == NORMAL;
+    }
+
+    public VitalsCategory max(VitalsCategory other) {
+        return other != null && other.ordinal() > ordinal() ? other : this;
+    }
+}
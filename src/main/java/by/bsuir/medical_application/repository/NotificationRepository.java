@@ -1,14 +1,86 @@
 package by.bsuir.medical_application.repository;
 
+import by.bsuir.medical_application.dto.NotificationDto;
 import by.bsuir.medical_application.model.Notification;
+import by.bsuir.medical_application.model.NotificationType;
+import by.bsuir.medical_application.model.UserRole;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
-    List<Notification> findTop50ByRecipientUserIdOrderByCreatedAtDesc(Long userId);
-    List<Notification> findByRecipientUserIdAndReadFalse(Long userId);
-    long countByRecipientUserIdAndReadFalse(Long userId);
-}
 
+    String FEED_PROJECTION = "select new by.bsuir.medical_application.dto.NotificationDto("
+            + "n.id, n.recipient.userId, n.message, n.type, n.patientId, n.patientName, "
+            + "n.departmentId, n.departmentName, n.createdAt, n.read) from Notification n ";
+
+    @Query(FEED_PROJECTION
+            + "where n.recipient.userId = :userId "
+            + "order by n.createdAt desc, n.id desc")
+    List<NotificationDto> findFeed(@Param("userId") Long userId, Limit limit);
+
+    @Query(FEED_PROJECTION
+            + "where n.recipient.userId = :userId "
+            + "and n.createdAt <= :createdAt and (n.createdAt < :createdAt or n.id < :id) "
+            + "order by n.createdAt desc, n.id desc")
+    List<NotificationDto> findFeedBefore(@Param("userId") Long userId,
+                                         @Param("createdAt") Instant createdAt,
+                                         @Param("id") Long id,
+                                         Limit limit);
+
+    @Query(FEED_PROJECTION
+            + "where n.recipient.userId = :userId "
+            + "and n.createdAt >= :createdAt and (n.createdAt > :createdAt or n.id > :id) "
+            + "order by n.createdAt asc, n.id asc")
+    List<NotificationDto> findFeedSince(@Param("userId") Long userId,
+                                        @Param("createdAt") Instant createdAt,
+                                        @Param("id") Long id,
+                                        Limit limit);
+
+    @Query(FEED_PROJECTION
+            + "join n.recipient r where r.department.id = :departmentId and r.role = :role "
+            + "order by n.createdAt desc, n.id desc")
+    List<NotificationDto> findDepartmentFeed(@Param("departmentId") Long departmentId,
+                                             @Param("role") UserRole role,
+                                             Limit limit);
+
+    @Query(FEED_PROJECTION
+            + "join n.recipient r where r.department.id = :departmentId and r.role = :role "
+            + "and n.createdAt <= :createdAt and (n.createdAt < :createdAt or n.id < :id) "
+            + "order by n.createdAt desc, n.id desc")
+    List<NotificationDto> findDepartmentFeedBefore(@Param("departmentId") Long departmentId,
+                                                   @Param("role") UserRole role,
+                                                   @Param("createdAt") Instant createdAt,
+                                                   @Param("id") Long id,
+                                                   Limit limit);
 
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Notification n SET n.read = true "
+            + "WHERE n.id = :notificationId AND n.recipient.userId = :userId AND n.read = false")
+    int markRead(@Param("notificationId") Long notificationId, @Param("userId") Long userId);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Notification n SET n.read = true WHERE n.recipient.userId = :userId AND n.read = false")
+    int markAllRead(@Param("userId") Long userId);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Notification n SET n.read = true "
+            + "WHERE n.recipient.userId = :userId AND n.read = false "
+            + "AND n.createdAt <= :createdAt AND (n.createdAt < :createdAt OR n.id <= :id)")
+    int markReadUpTo(@Param("userId") Long userId, @Param("createdAt") Instant createdAt, @Param("id") Long id);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Notification n SET n.read = true "
+            + "WHERE n.recipient.userId = :userId AND n.read = false AND n.type = :type")
+    int markReadByType(@Param("userId") Long userId, @Param("type") NotificationType type);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Notification n SET n.read = true "
+            + "WHERE n.recipient.userId = :userId AND n.read = false AND n.patientId = :patientId")
+    int markReadByPatient(@Param("userId") Long userId, @Param("patientId") Long patientId);
+}
@@ -43,6 +43,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     List<User> findByDepartmentIdAndRole(Long departmentId, UserRole role);
     
+    @Query("SELECT u.userId FROM User u WHERE u.department.id = :departmentId AND u.role = :role")
+    List<Long> findIdsByDepartmentIdAndRole(@Param("departmentId") Long departmentId, @Param("role") UserRole role);
+    
     List<User> findByDepartmentIdAndRoleAndAssignedDoctorIsNull(Long departmentId, UserRole role);
     
     @Query("SELECT u FROM User u WHERE u.createdAt >= :startDate AND u.createdAt <= :endDate")
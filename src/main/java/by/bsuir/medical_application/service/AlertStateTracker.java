@@ -0,0 +1,116 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.model.AlertTransition;
+import by.bsuir.medical_application.model.VitalsCategory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Конечный автомат тревог по пациентам.
+ * Тревога поднимается при переходе в более тяжёлую категорию, повторяется не чаще одного раза
+ * за repeat-minutes, а снимается или понижается только после clear-after-samples подряд
+ * более лёгких измерений (гистерезис). Врач и база данных затрагиваются только на переходах.
+ */
+@Service
+public class AlertStateTracker {
+
+    private final long repeatWindowMillis;
+    private final int clearAfterSamples;
+
+    private final Map<Long, AlertState> states = new ConcurrentHashMap<>();
+
+    private final AtomicLong notifications = new AtomicLong(0);
+    private final AtomicLong suppressed = new AtomicLong(0);
+
+    public AlertStateTracker(@Value("${monitoring.alerts.repeat-minutes:15}") long repeatMinutes,
+                             @Value("${monitoring.alerts.clear-after-samples:5}") int clearAfterSamples) {
+        this.repeatWindowMillis = TimeUnit.MINUTES.toMillis(repeatMinutes);
+        this.clearAfterSamples = Math.max(1, clearAfterSamples);
+    }
+
+    /**
+     * Учитывает категорию очередного измерения пациента
+     * @param patientId ID пациента
+     * @param category категория измерения
+     * @return переход состояния тревоги
+     */
+    public AlertTransition evaluate(Long patientId, VitalsCategory category) {
+        AlertState state = category.isNormal()
+                ? states.get(patientId)
+                : states.computeIfAbsent(patientId, id -> new AlertState());
+        if (state == null) {
+            return AlertTransition.NONE;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (state) {
+            if (category.ordinal() > state.level.ordinal()) {
+                AlertTransition transition = state.level.isNormal() ? AlertTransition.RAISED : AlertTransition.ESCALATED;
+                state.level = category;
+                state.lastNotifiedMillis = now;
+                state.betterStreak = 0;
+                notifications.incrementAndGet();
+                return transition;
+            }
+
+            if (category == state.level) {
+                state.betterStreak = 0;
+                if (!category.isNormal() && now - state.lastNotifiedMillis >= repeatWindowMillis) {
+                    state.lastNotifiedMillis = now;
+                    notifications.incrementAndGet();
+                    return AlertTransition.REPEATED;
+                }
+                suppressed.incrementAndGet();
+                return AlertTransition.NONE;
+            }
+
+            if (++state.betterStreak < clearAfterSamples) {
+                suppressed.incrementAndGet();
+                return AlertTransition.NONE;
+            }
+            state.level = category;
+            state.betterStreak = 0;
+            return category.isNormal() ? AlertTransition.CLEARED : AlertTransition.DOWNGRADED;
+        }
+    }
+
+    public VitalsCategory getLevel(Long patientId) {
+        AlertState state = states.get(patientId);
+        if (state == null) {
+            return VitalsCategory.NORMAL;
+        }
+        synchronized (state) {
+            return state.level;
+        }
+    }
+
+    /**
+     * Сбрасывает состояние тревоги пациента (например, при остановке мониторинга)
+     */
+    public void reset(Long patientId) {
+        states.remove(patientId);
+    }
+
+    public Map<String, Object> getStats() {
+        long active = states.values().stream()
+                .filter(state -> !state.level.isNormal())
+                .count();
+        return Map.of(
+                "trackedPatients", states.size(),
+                "activeAlerts", active,
+                "notifications", notifications.get(),
+                "suppressed", suppressed.get()
+        );
+    }
+
+    private static final class AlertState {
+        private volatile VitalsCategory level = VitalsCategory.NORMAL;
+        private long lastNotifiedMillis;
+        private int betterStreak;
+    }
+}
@@ -0,0 +1,16 @@
+package by.bsuir.medical_application.service;
+
+/**
+ * Публикуется при изменении лечащего врача, медсестры, отделения, роли или имени пациента.
+ * Обрабатывается {@link CareTeamDirectory} после фиксации транзакции.
+ */
+public record CareTeamChangedEvent(Long userId, boolean deleted) {
+
+    public static CareTeamChangedEvent updated(Long userId) {
+        return new CareTeamChangedEvent(userId, false);
+    }
+
+    public static CareTeamChangedEvent deleted(Long userId) {
+        return new CareTeamChangedEvent(userId, true);
+    }
+}
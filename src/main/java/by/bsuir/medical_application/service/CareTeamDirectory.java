@@ -0,0 +1,225 @@
+package by.bsuir.medical_application.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Индекс лечащей команды пациентов в памяти: врач, медсестра, отделение и отображаемое имя.
+ * Загружается целиком при старте и обновляется по {@link CareTeamChangedEvent} после фиксации
+ * транзакций {@link UserService} и {@link DepartmentService}, поэтому маршрутизация тревог не читает базу данных.
+ * Отсутствие пациента в базе тоже запоминается на missTtl, чтобы показатели неизвестных ID не вызывали
+ * запрос на каждое чтение.
+ */
+@Service
+@Slf4j
+public class CareTeamDirectory {
+
+    private static final String SELECT_SQL =
+            "SELECT u.user_id, u.username, u.first_name, u.last_name, u.assigned_doctor_id, u.assigned_nurse_id, "
+                    + "u.department_id, d.name AS department_name "
+                    + "FROM users u LEFT JOIN departments d ON d.department_id = u.department_id "
+                    + "WHERE u.role = 'PATIENT'";
+
+    private static final RowMapper<CareTeam> ROW_MAPPER = (rs, rowNum) -> new CareTeam(
+            rs.getLong("user_id"),
+            rs.getObject("assigned_doctor_id", Long.class),
+            rs.getObject("assigned_nurse_id", Long.class),
+            rs.getObject("department_id", Long.class),
+            rs.getString("department_name"),
+            displayName(rs.getString("first_name"), rs.getString("last_name"), rs.getString("username"))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long missTtlMillis;
+    private final Map<Long, CareTeam> careTeams = new ConcurrentHashMap<>();
+    private final Map<Long, Long> missedUntil = new ConcurrentHashMap<>();
+    // departmentId -> пациенты отделения; меняется вместе с careTeams через put/remove
+    private final Map<Long, Set<Long>> departmentPatients = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong loads = new AtomicLong(0);
+    private final AtomicLong cachedMissHits = new AtomicLong(0);
+    private final AtomicLong lastMissSweepMillis = new AtomicLong(System.currentTimeMillis());
+
+    public CareTeamDirectory(JdbcTemplate jdbcTemplate,
+                             @Value("${care-team.miss-ttl-seconds:60}") long missTtlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.missTtlMillis = TimeUnit.SECONDS.toMillis(missTtlSeconds);
+    }
+
+    /**
+     * Лечащая команда пациента
+     * @param patientId ID пациента
+     * @param doctorId ID лечащего врача или null
+     * @param nurseId ID медсестры или null
+     * @param departmentId ID отделения или null
+     * @param departmentName название отделения или null
+     * @param patientName отображаемое имя пациента
+     */
+    public record CareTeam(Long patientId,
+                           Long doctorId,
+                           Long nurseId,
+                           Long departmentId,
+                           String departmentName,
+                           String patientName) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        List<CareTeam> loaded = jdbcTemplate.query(SELECT_SQL, ROW_MAPPER);
+        loaded.forEach(this::put);
+        log.info("Care team directory loaded for {} patients", loaded.size());
+    }
+
+    /**
+     * Возвращает лечащую команду пациента из памяти.
+     * Пациент, отсутствующий в индексе (например, созданный в обход {@link UserService}), дочитывается один раз;
+     * если его нет и в базе, повторный запрос выполняется не раньше чем через missTtl.
+     */
+    public Optional<CareTeam> get(Long patientId) {
+        if (patientId == null) {
+            return Optional.empty();
+        }
+        CareTeam careTeam = careTeams.get(patientId);
+        if (careTeam != null) {
+            hits.incrementAndGet();
+            return Optional.of(careTeam);
+        }
+        long now = System.currentTimeMillis();
+        Long until = missedUntil.get(patientId);
+        if (until != null && until >= now) {
+            cachedMissHits.incrementAndGet();
+            return Optional.empty();
+        }
+        sweepExpiredMisses(now);
+        CareTeam loaded = reload(patientId);
+        if (loaded == null) {
+            missedUntil.put(patientId, now + missTtlMillis);
+        }
+        return Optional.ofNullable(loaded);
+    }
+
+    /**
+     * Лечащая команда пациента только из индекса в памяти, без дочитывания из базы.
+     * Подходит для вызовов под блокировками и на горячих путях, где запрос к базе недопустим
+     */
+    public Optional<CareTeam> peek(Long patientId) {
+        return patientId != null ? Optional.ofNullable(careTeams.get(patientId)) : Optional.empty();
+    }
+
+    public Optional<Long> getDoctorId(Long patientId) {
+        return get(patientId).map(CareTeam::doctorId);
+    }
+
+    /**
+     * ID пациентов отделения по индексу отделений в памяти (без дочитывания из базы и обхода всех пациентов)
+     */
+    public List<Long> getPatientIds(Long departmentId) {
+        Set<Long> patientIds = departmentPatients.get(departmentId);
+        return patientIds != null ? List.copyOf(patientIds) : List.of();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCareTeamChanged(CareTeamChangedEvent event) {
+        missedUntil.remove(event.userId());
+        if (event.deleted()) {
+            remove(event.userId());
+            return;
+        }
+        reload(event.userId());
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "patients", careTeams.size(),
+                "departments", departmentPatients.size(),
+                "hits", hits.get(),
+                "loads", loads.get(),
+                "cachedMisses", missedUntil.size(),
+                "cachedMissHits", cachedMissHits.get()
+        );
+    }
+
+    /**
+     * Удаляет истёкшие отметки отсутствия не чаще раза в missTtl
+     */
+    private void sweepExpiredMisses(long now) {
+        long last = lastMissSweepMillis.get();
+        if (now - last >= missTtlMillis && lastMissSweepMillis.compareAndSet(last, now)) {
+            missedUntil.values().removeIf(until -> until < now);
+        }
+    }
+
+    private CareTeam reload(Long patientId) {
+        loads.incrementAndGet();
+        List<CareTeam> loaded = jdbcTemplate.query(SELECT_SQL + " AND u.user_id = ?", ROW_MAPPER, patientId);
+        if (loaded.isEmpty()) {
+            remove(patientId);
+            return null;
+        }
+        CareTeam careTeam = loaded.get(0);
+        put(careTeam);
+        return careTeam;
+    }
+
+    private void put(CareTeam careTeam) {
+        CareTeam previous = careTeams.put(careTeam.patientId(), careTeam);
+        if (previous != null && !Objects.equals(previous.departmentId(), careTeam.departmentId())) {
+            unindex(previous);
+        }
+        if (careTeam.departmentId() != null) {
+            // compute, а не computeIfAbsent: иначе параллельный unindex может удалить ещё пустой набор до add
+            departmentPatients.compute(careTeam.departmentId(), (id, patientIds) -> {
+                Set<Long> updated = patientIds != null ? patientIds : ConcurrentHashMap.newKeySet();
+                updated.add(careTeam.patientId());
+                return updated;
+            });
+        }
+    }
+
+    private void remove(Long patientId) {
+        CareTeam previous = careTeams.remove(patientId);
+        if (previous != null) {
+            unindex(previous);
+        }
+    }
+
+    private void unindex(CareTeam careTeam) {
+        if (careTeam.departmentId() == null) {
+            return;
+        }
+        departmentPatients.computeIfPresent(careTeam.departmentId(), (id, patientIds) -> {
+            patientIds.remove(careTeam.patientId());
+            return patientIds.isEmpty() ? null : patientIds;
+        });
+    }
+
+    private static String displayName(String firstName, String lastName, String username) {
+        StringBuilder fullName = new StringBuilder();
+        if (firstName != null) {
+            fullName.append(firstName);
+        }
+        if (lastName != null) {
+            if (fullName.length() > 0) {
+                fullName.append(" ");
+            }
+            fullName.append(lastName);
+        }
+        return fullName.length() > 0 ? fullName.toString().trim() : username;
+    }
+}
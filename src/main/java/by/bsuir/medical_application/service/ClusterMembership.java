@@ -0,0 +1,188 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.utils.ConsistentHashRing;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состав кластера экземпляров приложения на основе таблицы cluster_nodes (см. V16).
+ * <p>
+ * Каждый узел раз в heartbeatMillis обновляет свою отметку, удаляет узлы, пропустившие отметки дольше
+ * nodeTtlMillis, и перестраивает {@link ConsistentHashRing} по живым узлам. Все сравнения времени
+ * выполняются по часам базы данных, поэтому расхождение часов узлов не влияет на состав.
+ * При выключенном кластере (cluster.enabled=false) таблица не используется и кольцо состоит из одного узла.
+ */
+@Component
+@Slf4j
+public class ClusterMembership {
+
+    private static final String HEARTBEAT_SQL =
+            "INSERT INTO cluster_nodes (node_id, started_at, heartbeat_at) VALUES (?, NOW(), NOW()) "
+                    + "ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = NOW()";
+
+    private static final String SWEEP_NODES_SQL =
+            "DELETE FROM cluster_nodes WHERE heartbeat_at < NOW() - CAST(? AS INTERVAL)";
+
+    private static final String SWEEP_DEMAND_SQL =
+            "DELETE FROM monitoring_demand d WHERE NOT EXISTS "
+                    + "(SELECT 1 FROM cluster_nodes n WHERE n.node_id = d.node_id)";
+
+    private static final String SELECT_LIVE_NODES_SQL =
+            "SELECT node_id FROM cluster_nodes WHERE heartbeat_at >= NOW() - CAST(? AS INTERVAL) ORDER BY node_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final String nodeId;
+    private final int virtualNodes;
+    private final long heartbeatMillis;
+    private final long nodeTtlMillis;
+
+    private final List<Runnable> topologyListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeat;
+    private volatile ConsistentHashRing ring;
+
+    private final AtomicLong heartbeats = new AtomicLong(0);
+    private final AtomicLong failedHeartbeats = new AtomicLong(0);
+    private final AtomicLong topologyChanges = new AtomicLong(0);
+    private final AtomicLong lastHeartbeatNanos = new AtomicLong(0);
+
+    public ClusterMembership(JdbcTemplate jdbcTemplate,
+                             @Value("${cluster.enabled:false}") boolean enabled,
+                             @Value("${cluster.node-id:}") String nodeId,
+                             @Value("${cluster.virtual-nodes:128}") int virtualNodes,
+                             @Value("${cluster.heartbeat-millis:2000}") long heartbeatMillis,
+                             @Value("${cluster.node-ttl-millis:10000}") long nodeTtlMillis) {
+        if (heartbeatMillis <= 0 || nodeTtlMillis <= heartbeatMillis) {
+            throw new IllegalArgumentException("Cluster node TTL must be greater than the heartbeat interval");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? generateNodeId() : nodeId;
+        this.virtualNodes = virtualNodes;
+        this.heartbeatMillis = heartbeatMillis;
+        this.nodeTtlMillis = nodeTtlMillis;
+        this.ring = new ConsistentHashRing(List.of(this.nodeId), virtualNodes);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Joining monitoring cluster as node {}", nodeId);
+        heartbeat.scheduleWithFixedDelay(this::beat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Регистрирует слушателя смены состава кластера; вызывается в потоке heartbeat
+     */
+    public void addTopologyListener(Runnable listener) {
+        topologyListeners.add(listener);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Узел считается действующим членом кластера, пока его последняя успешная отметка моложе nodeTtlMillis:
+     * после этого другие узлы уже могли исключить его из кольца
+     */
+    public boolean isActive() {
+        if (!enabled) {
+            return true;
+        }
+        long last = lastHeartbeatNanos.get();
+        return last != 0 && System.nanoTime() - last < TimeUnit.MILLISECONDS.toNanos(nodeTtlMillis);
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("nodeId", nodeId);
+        stats.put("active", isActive());
+        stats.put("nodes", ring.getNodes());
+        stats.put("virtualNodes", virtualNodes);
+        stats.put("heartbeats", heartbeats.get());
+        stats.put("failedHeartbeats", failedHeartbeats.get());
+        stats.put("topologyChanges", topologyChanges.get());
+        return stats;
+    }
+
+    private void beat() {
+        try {
+            String ttl = nodeTtlMillis + " milliseconds";
+            jdbcTemplate.update(HEARTBEAT_SQL, nodeId);
+            lastHeartbeatNanos.set(System.nanoTime());
+            heartbeats.incrementAndGet();
+            if (jdbcTemplate.update(SWEEP_NODES_SQL, ttl) > 0) {
+                jdbcTemplate.update(SWEEP_DEMAND_SQL);
+            }
+            List<String> nodes = jdbcTemplate.queryForList(SELECT_LIVE_NODES_SQL, String.class, ttl);
+            if (!nodes.equals(ring.getNodes())) {
+                log.info("Monitoring cluster topology changed: {} -> {}", ring.getNodes(), nodes);
+                ring = new ConsistentHashRing(nodes, virtualNodes);
+                topologyChanges.incrementAndGet();
+                topologyListeners.forEach(Runnable::run);
+            }
+        } catch (Exception e) {
+            failedHeartbeats.incrementAndGet();
+            log.error("Cluster heartbeat of node {} failed: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private static String generateNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @PreDestroy
+    public void leave() {
+        heartbeat.shutdownNow();
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM cluster_nodes WHERE node_id = ?", nodeId);
+            jdbcTemplate.update(SWEEP_DEMAND_SQL);
+            log.info("Node {} left the monitoring cluster", nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to deregister cluster node {}: {}", nodeId, e.getMessage());
+        }
+    }
+}
@@ -2,10 +2,13 @@ package by.bsuir.medical_application.service;
 
 import by.bsuir.medical_application.exceptions.DepartmentCreatingException;
 import by.bsuir.medical_application.model.Department;
+import by.bsuir.medical_application.model.UserRole;
 import by.bsuir.medical_application.repository.DepartmentRepository;
+import by.bsuir.medical_application.repository.UserRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -14,6 +17,8 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class DepartmentService {
     private final DepartmentRepository departmentRepository;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Department getDepartmentByName(String name){
         return departmentRepository.findByName(name);
@@ -63,11 +68,20 @@ public class DepartmentService {
         Department updated = departmentRepository.save(existing);
         log.info("Department {} updated successfully", updated.getId());
         
+        // Название отделения хранится в лечащей команде каждого пациента отделения
+        publishCareTeamChanges(updated.getId());
+        
         return updated;
     }
 
     public void deleteDepartment(Long id) {
         Department existing = getDepartmentById(id);
+        publishCareTeamChanges(id);
         departmentRepository.delete(existing);
     }
+
+    private void publishCareTeamChanges(Long departmentId) {
+        userRepository.findIdsByDepartmentIdAndRole(departmentId, UserRole.PATIENT)
+                .forEach(patientId -> eventPublisher.publishEvent(CareTeamChangedEvent.updated(patientId)));
+    }
 }
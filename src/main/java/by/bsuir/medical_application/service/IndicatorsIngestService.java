@@ -0,0 +1,274 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.IndicatorsBatchResponseDto;
+import by.bsuir.medical_application.dto.IndicatorsStreamSummaryDto;
+import by.bsuir.medical_application.dto.IndicatorsSubmitResultDto;
+import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import by.bsuir.medical_application.exceptions.IndicatorsIngestException;
+import by.bsuir.medical_application.exceptions.IndicatorsOverloadedException;
+import by.bsuir.medical_application.model.AlertLevel;
+import by.bsuir.medical_application.model.VitalsCategory;
+import by.bsuir.medical_application.websocket.VitalsPublisher;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Единая точка приёма показателей от устройств: проверка, классификация, рассылка подписчикам
+ * и постановка в очередь на сохранение
+ */
+@Service
+@Slf4j
+public class IndicatorsIngestService {
+
+    private static final String PERSISTENCE_QUEUE_FULL = "Indicators persistence queue is full, retry later";
+
+    private final Validator validator;
+    private final IndicatorsPersistenceService indicatorsPersistenceService;
+    private final LatestIndicatorsCache latestIndicatorsCache;
+    private final RecentVitalsBuffer recentVitalsBuffer;
+    private final VitalsChunkStore vitalsChunkStore;
+    private final VitalsRollupService vitalsRollupService;
+    private final VitalsPublisher vitalsPublisher;
+    private final ObjectReader indicatorsReader;
+    private final int maxBatchSize;
+    private final int maxReportedRejections;
+    private final AtomicLong unpersistedMonitoringReadings = new AtomicLong();
+
+    public IndicatorsIngestService(Validator validator,
+                                   IndicatorsPersistenceService indicatorsPersistenceService,
+                                   LatestIndicatorsCache latestIndicatorsCache,
+                                   RecentVitalsBuffer recentVitalsBuffer,
+                                   VitalsChunkStore vitalsChunkStore,
+                                   VitalsRollupService vitalsRollupService,
+                                   VitalsPublisher vitalsPublisher,
+                                   ObjectMapper objectMapper,
+                                   @Value("${indicators.ingest.max-batch-size:5000}") int maxBatchSize,
+                                   @Value("${indicators.ingest.max-reported-rejections:100}") int maxReportedRejections) {
+        this.validator = validator;
+        this.indicatorsPersistenceService = indicatorsPersistenceService;
+        this.latestIndicatorsCache = latestIndicatorsCache;
+        this.recentVitalsBuffer = recentVitalsBuffer;
+        this.vitalsChunkStore = vitalsChunkStore;
+        this.vitalsRollupService = vitalsRollupService;
+        this.vitalsPublisher = vitalsPublisher;
+        this.indicatorsReader = objectMapper.readerFor(MedicalIndicatorsDto.class);
+        this.maxBatchSize = maxBatchSize;
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    /**
+     * Принимает уже проверенные показатели: проставляет время, классифицирует,
+     * рассылает подписчикам и ставит в очередь на сохранение
+     * @param indicators показатели пациента
+     * @return результат обработки
+     * @throws IndicatorsOverloadedException если очередь сохранения переполнена и показатели не приняты
+     */
+    public IndicatorsSubmitResultDto ingest(MedicalIndicatorsDto indicators) {
+        IndicatorsSubmitResultDto result = ingest(0, indicators);
+        if (!result.isAccepted()) {
+            throw new IndicatorsOverloadedException(PERSISTENCE_QUEUE_FULL);
+        }
+        return result;
+    }
+
+    /**
+     * Принимает показатели, сгенерированные мониторингом. В отличие от {@link #ingest(MedicalIndicatorsDto)}
+     * не бросает исключение при переполненной очереди сохранения: показатели всё равно рассылаются,
+     * кешируются и проверяются на тревоги, а потеря сохранения только учитывается в статистике
+     * @param indicators показатели пациента
+     * @return результат обработки
+     */
+    public IndicatorsSubmitResultDto ingestMonitored(MedicalIndicatorsDto indicators) {
+        if (indicators.getTimestamp() == null) {
+            indicators.setTimestamp(LocalDateTime.now());
+        }
+        if (!indicatorsPersistenceService.enqueue(indicators)) {
+            long dropped = unpersistedMonitoringReadings.incrementAndGet();
+            if (dropped == 1 || dropped % 1000 == 0) {
+                log.warn("Persistence queue is full, monitoring readings are published without saving ({} so far)", dropped);
+            }
+        }
+        return accept(0, indicators);
+    }
+
+    /**
+     * Проверяет и принимает пачку показателей за один проход
+     * @param readings показатели от шлюза
+     * @return результаты по каждому элементу и агрегированные уровни тревоги
+     */
+    public IndicatorsBatchResponseDto ingestBatch(List<MedicalIndicatorsDto> readings) {
+        if (readings == null || readings.isEmpty()) {
+            throw new IndicatorsIngestException("Batch must contain at least one reading");
+        }
+        if (readings.size() > maxBatchSize) {
+            throw new IndicatorsIngestException("Batch size " + readings.size() + " exceeds limit of " + maxBatchSize);
+        }
+
+        List<IndicatorsSubmitResultDto> results = new ArrayList<>(readings.size());
+        Map<AlertLevel, Integer> alertLevelCounts = new EnumMap<>(AlertLevel.class);
+        AlertLevel highestAlertLevel = AlertLevel.NORMAL;
+        int accepted = 0;
+
+        for (int i = 0; i < readings.size(); i++) {
+            IndicatorsSubmitResultDto result = validateAndIngest(i, readings.get(i));
+            results.add(result);
+            if (result.isAccepted()) {
+                accepted++;
+                alertLevelCounts.merge(result.getAlertLevel(), 1, Integer::sum);
+                highestAlertLevel = highestAlertLevel.max(result.getAlertLevel());
+            }
+        }
+
+        log.info("Received batch of {} medical indicators: accepted={}, highest alert level={}",
+                readings.size(), accepted, highestAlertLevel);
+
+        return IndicatorsBatchResponseDto.builder()
+                .received(readings.size())
+                .accepted(accepted)
+                .rejected(readings.size() - accepted)
+                .highestAlertLevel(highestAlertLevel)
+                .alertLevelCounts(alertLevelCounts)
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Читает непрерывный поток показателей в формате NDJSON (один MedicalIndicatorsDto на строку)
+     * потоковым парсером и обрабатывает каждый показатель сразу после чтения.
+     * Память не зависит от длины потока: хранятся только счётчики и первые maxReportedRejections ошибок.
+     * @param inputStream тело запроса
+     * @return сводка по обработанному потоку
+     */
+    public IndicatorsStreamSummaryDto ingestStream(InputStream inputStream) throws IOException {
+        long received = 0;
+        long accepted = 0;
+        Map<AlertLevel, Long> alertLevelCounts = new EnumMap<>(AlertLevel.class);
+        AlertLevel highestAlertLevel = AlertLevel.NORMAL;
+        List<IndicatorsSubmitResultDto> rejections = new ArrayList<>();
+        String error = null;
+
+        try (MappingIterator<MedicalIndicatorsDto> iterator = indicatorsReader.readValues(inputStream)) {
+            while (iterator.hasNextValue()) {
+                int index = (int) Math.min(received, Integer.MAX_VALUE);
+                received++;
+                IndicatorsSubmitResultDto result;
+                try {
+                    result = validateAndIngest(index, iterator.nextValue());
+                } catch (JsonMappingException e) {
+                    // Ошибка привязки значения: парсер уже пропустил этот объект, продолжаем со следующей строки
+                    result = rejected(index, null, Map.of("reading", e.getOriginalMessage()));
+                }
+                if (result.isAccepted()) {
+                    accepted++;
+                    alertLevelCounts.merge(result.getAlertLevel(), 1L, Long::sum);
+                    highestAlertLevel = highestAlertLevel.max(result.getAlertLevel());
+                } else if (rejections.size() < maxReportedRejections) {
+                    rejections.add(result);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            error = "Malformed NDJSON after " + received + " readings: " + e.getOriginalMessage();
+            log.warn("Indicators stream aborted: {}", error);
+        }
+
+        log.info("Indicators stream finished: received={}, accepted={}, highest alert level={}",
+                received, accepted, highestAlertLevel);
+
+        return IndicatorsStreamSummaryDto.builder()
+                .received(received)
+                .accepted(accepted)
+                .rejected(received - accepted)
+                .highestAlertLevel(highestAlertLevel)
+                .alertLevelCounts(alertLevelCounts)
+                .rejections(rejections)
+                .completed(error == null)
+                .error(error)
+                .build();
+    }
+
+    /**
+     * Проверяет ограничения MedicalIndicatorsDto и, если ошибок нет, принимает показатели
+     * @param index позиция показателей в исходной пачке или потоке
+     * @param indicators показатели пациента
+     * @return результат обработки с ошибками проверки, если они есть
+     */
+    public IndicatorsSubmitResultDto validateAndIngest(int index, MedicalIndicatorsDto indicators) {
+        if (indicators == null) {
+            return rejected(index, null, Map.of("reading", "Reading is required"));
+        }
+        Set<ConstraintViolation<MedicalIndicatorsDto>> violations = validator.validate(indicators);
+        if (!violations.isEmpty()) {
+            Map<String, String> errors = new HashMap<>();
+            violations.forEach(violation ->
+                    errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+            return rejected(index, indicators.getPatientId(), errors);
+        }
+        return ingest(index, indicators);
+    }
+
+    private IndicatorsSubmitResultDto ingest(int index, MedicalIndicatorsDto indicators) {
+        if (indicators.getTimestamp() == null) {
+            indicators.setTimestamp(LocalDateTime.now());
+        }
+
+        // Показатели, которые не удалось поставить в очередь на сохранение, отклоняются целиком,
+        // чтобы устройство повторило отправку, а не считало их сохранёнными
+        if (!indicatorsPersistenceService.enqueue(indicators)) {
+            return rejected(index, indicators.getPatientId(), Map.of("reading", PERSISTENCE_QUEUE_FULL));
+        }
+        return accept(index, indicators);
+    }
+
+    private IndicatorsSubmitResultDto accept(int index, MedicalIndicatorsDto indicators) {
+        latestIndicatorsCache.update(indicators);
+        recentVitalsBuffer.record(indicators);
+        vitalsPublisher.publish(indicators);
+        vitalsChunkStore.append(indicators);
+        vitalsRollupService.record(indicators);
+
+        VitalsCategory category = indicators.classify();
+        AlertLevel alertLevel = category.getAlertLevel();
+        return IndicatorsSubmitResultDto.builder()
+                .index(index)
+                .patientId(indicators.getPatientId())
+                .accepted(true)
+                .timestamp(indicators.getTimestamp())
+                .category(category.getLabel())
+                .criticalStatus(alertLevel.isAlert() ? indicators.getCriticalStatus() : "Normal")
+                .alertLevel(alertLevel)
+                .alert(alertLevel.isAlert())
+                .build();
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of("unpersistedMonitoringReadings", unpersistedMonitoringReadings.get());
+    }
+
+    private IndicatorsSubmitResultDto rejected(int index, Long patientId, Map<String, String> errors) {
+        return IndicatorsSubmitResultDto.builder()
+                .index(index)
+                .patientId(patientId)
+                .accepted(false)
+                .errors(errors)
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import by.bsuir.medical_application.utils.BatchingQueueWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сохраняет показатели пациентов в таблицу indicators пачками через JDBC batch insert.
+ * Потоки приёма и мониторинга только кладут показатели в очередь и никогда не ждут базу данных.
+ * Основное хранилище истории — блоки {@link VitalsChunkStore}; построчная запись оставлена для совместимости
+ * с внешними потребителями таблицы indicators и по умолчанию выключена (indicators.persistence.enabled).
+ */
+@Service
+@Slf4j
+public class IndicatorsPersistenceService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO indicators (patient_id, heartrate, temperature, spo2, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final BatchingQueueWriter<MedicalIndicatorsDto> writer;
+    private final AtomicLong rejectedRows = new AtomicLong(0);
+
+    public IndicatorsPersistenceService(JdbcTemplate jdbcTemplate,
+                                        @Value("${indicators.persistence.enabled:false}") boolean enabled,
+                                        @Value("${indicators.persistence.queue-capacity:100000}") int queueCapacity,
+                                        @Value("${indicators.persistence.batch-size:1000}") int batchSize,
+                                        @Value("${indicators.persistence.max-latency-millis:500}") long maxLatencyMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.writer = new BatchingQueueWriter<>("indicators", queueCapacity, batchSize, maxLatencyMillis, this::insertBatch);
+    }
+
+    /**
+     * Ставит показатели в очередь на сохранение
+     * @param indicators показатели пациента с заполненными patientId и timestamp
+     * @return false если показатели не приняты (нет пациента или очередь переполнена);
+     * при отключённом построчном хранении сохранять нечего и всегда возвращается true
+     */
+    public boolean enqueue(MedicalIndicatorsDto indicators) {
+        if (indicators == null || indicators.getPatientId() == null || indicators.getTimestamp() == null) {
+            return false;
+        }
+        if (!enabled) {
+            return true;
+        }
+        return writer.offer(indicators);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(writer.getStats());
+        stats.put("rejectedRows", rejectedRows.get());
+        return stats;
+    }
+
+    /**
+     * Сохраняет пачку одним JDBC batch. Если пачка отклонена нарушением целостности (например, показатели
+     * пациента, которого нет в users), строки сохраняются по одной, чтобы одна ошибочная строка не
+     * отбрасывала остальные
+     */
+    private void insertBatch(List<MedicalIndicatorsDto> batch) {
+        try {
+            insertRows(batch);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Batch of {} indicators rejected ({}), retrying row by row", batch.size(), e.getMostSpecificCause().getMessage());
+            int rejected = 0;
+            for (MedicalIndicatorsDto indicators : batch) {
+                try {
+                    insertRows(List.of(indicators));
+                } catch (DataIntegrityViolationException rowError) {
+                    rejected++;
+                    log.debug("Rejected indicators of patient {}: {}", indicators.getPatientId(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+            rejectedRows.addAndGet(rejected);
+            log.warn("Rejected {} of {} indicators that violate constraints", rejected, batch.size());
+        }
+    }
+
+    private void insertRows(List<MedicalIndicatorsDto> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, indicators) -> {
+            ps.setLong(1, indicators.getPatientId());
+            if (indicators.getHeartrate() != null) {
+                ps.setInt(2, indicators.getHeartrate());
+            } else {
+                ps.setNull(2, Types.INTEGER);
+            }
+            if (indicators.getTemperature() != null) {
+                ps.setDouble(3, indicators.getTemperature());
+            } else {
+                ps.setNull(3, Types.DOUBLE);
+            }
+            if (indicators.getSpo2() != null) {
+                ps.setInt(4, indicators.getSpo2());
+            } else {
+                ps.setNull(4, Types.INTEGER);
+            }
+            ps.setTimestamp(5, Timestamp.valueOf(indicators.getTimestamp()));
+        });
+        log.debug("Persisted batch of {} indicators", batch.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+    }
+}
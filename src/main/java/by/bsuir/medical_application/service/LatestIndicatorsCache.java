@@ -0,0 +1,178 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий кэш последних показателей пациентов для приёма, мониторинга и REST-чтения.
+ * Обновляется на пути приёма; при промахе читает последние сохранённые показатели из блоков
+ * {@link VitalsChunkStore}, а при включённом построчном хранении — из таблицы indicators.
+ * Промахи базы данных тоже запоминаются на короткое время, чтобы опрос коек без данных не нагружал БД.
+ */
+@Service
+@Slf4j
+public class LatestIndicatorsCache {
+
+    private static final String SELECT_LATEST_SQL =
+            "SELECT DISTINCT ON (patient_id) patient_id, heartrate, temperature, spo2, timestamp "
+                    + "FROM indicators WHERE patient_id = ANY (?) ORDER BY patient_id, timestamp DESC";
+
+    private static final RowMapper<MedicalIndicatorsDto> ROW_MAPPER = (rs, rowNum) -> MedicalIndicatorsDto.builder()
+            .patientId(rs.getLong("patient_id"))
+            .heartrate(rs.getObject("heartrate", Integer.class))
+            .temperature(rs.getObject("temperature", Double.class))
+            .spo2(rs.getObject("spo2", Integer.class))
+            .timestamp(rs.getTimestamp("timestamp") != null ? rs.getTimestamp("timestamp").toLocalDateTime() : null)
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VitalsChunkStore vitalsChunkStore;
+    private final boolean rowStoreEnabled;
+    private final long missTtlMillis;
+
+    private final Map<Long, MedicalIndicatorsDto> latest = new ConcurrentHashMap<>();
+    private final Map<Long, Long> missedUntil = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong databaseLookups = new AtomicLong(0);
+    private final AtomicLong lastMissSweepMillis = new AtomicLong(System.currentTimeMillis());
+
+    public LatestIndicatorsCache(JdbcTemplate jdbcTemplate,
+                                 VitalsChunkStore vitalsChunkStore,
+                                 @Value("${indicators.persistence.enabled:false}") boolean rowStoreEnabled,
+                                 @Value("${indicators.latest.miss-ttl-seconds:30}") long missTtlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.vitalsChunkStore = vitalsChunkStore;
+        this.rowStoreEnabled = rowStoreEnabled;
+        this.missTtlMillis = TimeUnit.SECONDS.toMillis(missTtlSeconds);
+    }
+
+    /**
+     * Запоминает показатели, если они не старше уже известных для пациента
+     * @param indicators показатели с заполненными patientId и timestamp
+     */
+    public void update(MedicalIndicatorsDto indicators) {
+        if (indicators == null || indicators.getPatientId() == null) {
+            return;
+        }
+        latest.merge(indicators.getPatientId(), indicators, LatestIndicatorsCache::newer);
+        missedUntil.remove(indicators.getPatientId());
+    }
+
+    /**
+     * Возвращает последние показатели из памяти, не обращаясь к базе данных
+     */
+    public Optional<MedicalIndicatorsDto> peek(Long patientId) {
+        return Optional.ofNullable(latest.get(patientId));
+    }
+
+    /**
+     * Возвращает последние показатели пациента, при промахе читая их из базы данных
+     * @param patientId ID пациента
+     * @return последние показатели или пустой Optional, если данных нет
+     */
+    public Optional<MedicalIndicatorsDto> getLatest(Long patientId) {
+        return Optional.ofNullable(getLatest(List.of(patientId)).get(patientId));
+    }
+
+    /**
+     * Возвращает последние показатели для набора пациентов; промахи дочитываются одним запросом
+     * @param patientIds ID пациентов
+     * @return показатели по ID пациента в порядке запроса; пациенты без данных отсутствуют
+     */
+    public Map<Long, MedicalIndicatorsDto> getLatest(Collection<Long> patientIds) {
+        Map<Long, MedicalIndicatorsDto> result = new LinkedHashMap<>();
+        List<Long> toLoad = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Long patientId : patientIds) {
+            if (patientId == null || result.containsKey(patientId)) {
+                continue;
+            }
+            MedicalIndicatorsDto cached = latest.get(patientId);
+            if (cached != null) {
+                hits.incrementAndGet();
+                result.put(patientId, cached);
+                continue;
+            }
+            misses.incrementAndGet();
+            Long until = missedUntil.get(patientId);
+            if (until == null || until < now) {
+                toLoad.add(patientId);
+            }
+        }
+        sweepExpiredMisses(now);
+
+        if (!toLoad.isEmpty()) {
+            for (MedicalIndicatorsDto loaded : loadFromDatabase(toLoad)) {
+                MedicalIndicatorsDto current = latest.merge(loaded.getPatientId(), loaded, LatestIndicatorsCache::newer);
+                result.put(loaded.getPatientId(), current);
+            }
+            for (Long patientId : toLoad) {
+                if (!result.containsKey(patientId)) {
+                    missedUntil.put(patientId, now + missTtlMillis);
+                }
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "cachedPatients", latest.size(),
+                "cachedMisses", missedUntil.size(),
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "databaseLookups", databaseLookups.get()
+        );
+    }
+
+    /**
+     * Удаляет истёкшие отметки промахов не чаще раза в missTtl, поэтому отметка живёт не дольше двух missTtl
+     * и таблица промахов не растёт от запросов по несуществующим ID
+     */
+    private void sweepExpiredMisses(long now) {
+        long last = lastMissSweepMillis.get();
+        if (now - last >= missTtlMillis && lastMissSweepMillis.compareAndSet(last, now)) {
+            missedUntil.values().removeIf(until -> until < now);
+        }
+    }
+
+    private List<MedicalIndicatorsDto> loadFromDatabase(List<Long> patientIds) {
+        databaseLookups.incrementAndGet();
+        if (!rowStoreEnabled) {
+            return vitalsChunkStore.readLatest(patientIds);
+        }
+        return jdbcTemplate.query(SELECT_LATEST_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            Array ids = connection.createArrayOf("bigint", patientIds.toArray());
+            ps.setArray(1, ids);
+        }, ROW_MAPPER);
+    }
+
+    private static MedicalIndicatorsDto newer(MedicalIndicatorsDto current, MedicalIndicatorsDto candidate) {
+        if (current.getTimestamp() == null) {
+            return candidate;
+        }
+        if (candidate.getTimestamp() == null) {
+            return current;
+        }
+        return candidate.getTimestamp().isBefore(current.getTimestamp()) ? current : candidate;
+    }
+}
@@ -0,0 +1,308 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.utils.ConsistentHashRing;
+import by.bsuir.medical_application.websocket.MonitoringRelay;
+import by.bsuir.medical_application.websocket.RelayMessage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Распределение генерации показателей пациентов между узлами кластера.
+ * <p>
+ * Подписчики пациента могут быть подключены к любому узлу, поэтому каждый узел записывает в monitoring_demand
+ * пациентов, за которыми у него наблюдают. Генерирует показатели пациента только узел, которому он принадлежит
+ * по {@link ConsistentHashRing}, и только пока держит аренду в monitoring_leases. Аренды продлеваются
+ * каждые rebalanceMillis; при смене состава кластера прежний владелец отпускает аренду, а новый забирает её
+ * при следующем пересмотре. Если узел упал, его аренды истекают через leaseMillis и переходят к новым владельцам.
+ * Узел, который не смог продлить аренды дольше leaseMillis, сам останавливает генерацию, чтобы два узла
+ * не генерировали показатели одного пациента: срок аренды отсчитывается от момента перед отправкой запроса
+ * продления, запросы пересмотра ограничены таймаутом меньше аренды, а генератор перед каждым отсчётом
+ * проверяет {@link #holdsLease}.
+ * <p>
+ * При выключенном кластере сервис не используется: мониторинг запускается на локальном узле.
+ */
+@Service
+@Slf4j
+public class MonitoringOwnershipService {
+
+    private static final String SELECT_DEMANDED_SQL =
+            "SELECT DISTINCT d.patient_id FROM monitoring_demand d "
+                    + "JOIN cluster_nodes n ON n.node_id = d.node_id "
+                    + "WHERE n.heartbeat_at >= NOW() - CAST(? AS INTERVAL)";
+
+    private static final String DELETE_STALE_DEMAND_SQL =
+            "DELETE FROM monitoring_demand WHERE node_id = ? AND NOT (patient_id = ANY(?::bigint[]))";
+
+    private static final String INSERT_DEMAND_SQL =
+            "INSERT INTO monitoring_demand (node_id, patient_id) SELECT ?, unnest(?::bigint[]) "
+                    + "ON CONFLICT (node_id, patient_id) DO NOTHING";
+
+    private static final String ACQUIRE_LEASES_SQL =
+            "INSERT INTO monitoring_leases (patient_id, node_id, expires_at) "
+                    + "SELECT patient_id, ?, NOW() + CAST(? AS INTERVAL) FROM unnest(?::bigint[]) AS patient_id "
+                    + "ON CONFLICT (patient_id) DO UPDATE SET node_id = EXCLUDED.node_id, expires_at = EXCLUDED.expires_at "
+                    + "WHERE monitoring_leases.node_id = EXCLUDED.node_id OR monitoring_leases.expires_at < NOW() "
+                    + "RETURNING patient_id";
+
+    private static final String RELEASE_LEASES_SQL =
+            "DELETE FROM monitoring_leases WHERE node_id = ? AND NOT (patient_id = ANY(?::bigint[]))";
+
+    // Отдельный шаблон с таймаутом запросов меньше срока аренды
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterMembership clusterMembership;
+    private final MonitoringRelay monitoringRelay;
+    private final long leaseMillis;
+    private final long rebalanceMillis;
+    private final long nodeTtlMillis;
+
+    // Пациенты с подписчиками на этом узле и пациенты, показатели которых генерирует этот узел
+    private final Set<Long> localDemand = ConcurrentHashMap.newKeySet();
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean demandChanged = new AtomicBoolean(false);
+    private final AtomicBoolean rebalanceRequested = new AtomicBoolean(false);
+    private final ScheduledExecutorService rebalancer;
+
+    private volatile Consumer<Long> starter = patientId -> { };
+    private volatile Consumer<Long> stopper = patientId -> { };
+    private volatile long lastRenewalNanos;
+
+    private final AtomicLong rebalances = new AtomicLong(0);
+    private final AtomicLong failedRebalances = new AtomicLong(0);
+    private final AtomicLong acquired = new AtomicLong(0);
+    private final AtomicLong released = new AtomicLong(0);
+
+    public MonitoringOwnershipService(JdbcTemplate jdbcTemplate,
+                                      ClusterMembership clusterMembership,
+                                      MonitoringRelay monitoringRelay,
+                                      @Value("${cluster.lease-millis:15000}") long leaseMillis,
+                                      @Value("${cluster.rebalance-millis:5000}") long rebalanceMillis,
+                                      @Value("${cluster.node-ttl-millis:10000}") long nodeTtlMillis) {
+        if (rebalanceMillis <= 0 || leaseMillis <= rebalanceMillis) {
+            throw new IllegalArgumentException("Monitoring lease must be longer than the rebalance interval");
+        }
+        if (clusterMembership.isEnabled() && !monitoringRelay.isDistributed()) {
+            throw new IllegalStateException("cluster.enabled=true requires a distributed relay (cluster.relay.type=postgres)");
+        }
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(leaseMillis / 3)));
+        this.clusterMembership = clusterMembership;
+        this.monitoringRelay = monitoringRelay;
+        this.leaseMillis = leaseMillis;
+        this.rebalanceMillis = rebalanceMillis;
+        this.nodeTtlMillis = nodeTtlMillis;
+        this.rebalancer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "monitoring-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        clusterMembership.addTopologyListener(this::requestRebalance);
+        monitoringRelay.addListener(message -> {
+            if (message.type() == RelayMessage.Type.DEMAND) {
+                requestRebalance();
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRebalancing() {
+        if (isEnabled()) {
+            rebalancer.scheduleWithFixedDelay(this::rebalance, rebalanceMillis, rebalanceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return clusterMembership.isEnabled();
+    }
+
+    /**
+     * Задаёт действия запуска и остановки генератора показателей пациента на этом узле;
+     * они вызываются в потоке пересмотра аренд
+     */
+    public void bind(Consumer<Long> starter, Consumer<Long> stopper) {
+        this.starter = starter;
+        this.stopper = stopper;
+    }
+
+    /**
+     * Отмечает, есть ли у пациента подписчики на этом узле; владелец узнаёт об изменении при ближайшем пересмотре
+     */
+    public void updateLocalDemand(Long patientId, boolean hasViewers) {
+        boolean changed = hasViewers ? localDemand.add(patientId) : localDemand.remove(patientId);
+        if (changed) {
+            demandChanged.set(true);
+            requestRebalance();
+        }
+    }
+
+    /**
+     * Можно ли генерировать показатели пациента на этом узле: вне кластера — всегда, в кластере — пока узел
+     * держит аренду пациента и последнее продление не старше leaseMillis
+     */
+    public boolean holdsLease(Long patientId) {
+        if (!isEnabled()) {
+            return true;
+        }
+        return running.contains(patientId) && System.nanoTime() - lastRenewalNanos < TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("localDemand", localDemand.size());
+        stats.put("ownedPatients", running.size());
+        stats.put("leaseMillis", leaseMillis);
+        stats.put("rebalanceMillis", rebalanceMillis);
+        stats.put("rebalances", rebalances.get());
+        stats.put("failedRebalances", failedRebalances.get());
+        stats.put("acquiredLeases", acquired.get());
+        stats.put("releasedLeases", released.get());
+        return stats;
+    }
+
+    private void requestRebalance() {
+        if (isEnabled() && rebalanceRequested.compareAndSet(false, true)) {
+            rebalancer.execute(() -> {
+                rebalanceRequested.set(false);
+                rebalance();
+            });
+        }
+    }
+
+    /**
+     * Синхронизирует набор наблюдаемых пациентов узла, продлевает или забирает аренды пациентов, принадлежащих
+     * узлу по кольцу, останавливает генерацию пациентов, которые узлу больше не принадлежат, и отпускает их аренды
+     */
+    private void rebalance() {
+        if (!clusterMembership.isActive()) {
+            stopAllIfLeasesExpired();
+            return;
+        }
+        try {
+            boolean notifyOwners = demandChanged.getAndSet(false);
+            List<Long> demand = List.copyOf(localDemand);
+            updateForNode(DELETE_STALE_DEMAND_SQL, demand);
+            updateForNode(INSERT_DEMAND_SQL, demand);
+            if (notifyOwners) {
+                monitoringRelay.publishDemand(null);
+            }
+
+            ConsistentHashRing ring = clusterMembership.getRing();
+            String nodeId = clusterMembership.getNodeId();
+            List<Long> owned = new ArrayList<>();
+            for (Long patientId : jdbcTemplate.queryForList(SELECT_DEMANDED_SQL, Long.class, nodeTtlMillis + " milliseconds")) {
+                if (nodeId.equals(ring.ownerOf(patientId))) {
+                    owned.add(patientId);
+                }
+            }
+
+            // База отсчитывает срок аренды не раньше этого момента, поэтому локальная оценка не переживёт настоящую
+            long renewalStartedNanos = System.nanoTime();
+            Set<Long> leased = acquireLeases(owned);
+            lastRenewalNanos = renewalStartedNanos;
+            released.addAndGet(updateForNode(RELEASE_LEASES_SQL, leased));
+
+            for (Long patientId : leased) {
+                if (running.add(patientId)) {
+                    acquired.incrementAndGet();
+                    starter.accept(patientId);
+                }
+            }
+            for (Long patientId : List.copyOf(running)) {
+                if (!leased.contains(patientId)) {
+                    running.remove(patientId);
+                    stopper.accept(patientId);
+                    log.info("Monitoring of patient {} handed over to node {}", patientId, ring.ownerOf(patientId));
+                }
+            }
+            rebalances.incrementAndGet();
+        } catch (Exception e) {
+            failedRebalances.incrementAndGet();
+            log.error("Monitoring rebalance failed: {}", e.getMessage(), e);
+            stopAllIfLeasesExpired();
+        }
+    }
+
+    private Set<Long> acquireLeases(List<Long> patientIds) {
+        if (patientIds.isEmpty()) {
+            return Set.of();
+        }
+        return jdbcTemplate.execute((ConnectionCallback<Set<Long>>) connection -> {
+            Set<Long> leased = new HashSet<>();
+            try (PreparedStatement ps = connection.prepareStatement(ACQUIRE_LEASES_SQL)) {
+                ps.setString(1, clusterMembership.getNodeId());
+                ps.setString(2, leaseMillis + " milliseconds");
+                ps.setArray(3, connection.createArrayOf("bigint", patientIds.toArray()));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        leased.add(rs.getLong(1));
+                    }
+                }
+            }
+            return leased;
+        });
+    }
+
+    /**
+     * Выполняет запрос с параметрами (ID узла, массив ID пациентов)
+     */
+    private int updateForNode(String sql, Collection<Long> patientIds) {
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, clusterMembership.getNodeId());
+                ps.setArray(2, connection.createArrayOf("bigint", patientIds.toArray()));
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Если аренды не продлевались дольше leaseMillis, их уже могли забрать другие узлы
+     */
+    private void stopAllIfLeasesExpired() {
+        if (running.isEmpty() || System.nanoTime() - lastRenewalNanos < TimeUnit.MILLISECONDS.toNanos(leaseMillis)) {
+            return;
+        }
+        log.warn("Monitoring leases of node {} expired, stopping {} patients", clusterMembership.getNodeId(), running.size());
+        for (Long patientId : List.copyOf(running)) {
+            running.remove(patientId);
+            stopper.accept(patientId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebalancer.shutdownNow();
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM monitoring_leases WHERE node_id = ?", clusterMembership.getNodeId());
+            jdbcTemplate.update("DELETE FROM monitoring_demand WHERE node_id = ?", clusterMembership.getNodeId());
+        } catch (Exception e) {
+            log.warn("Failed to release monitoring leases of node {}: {}", clusterMembership.getNodeId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package by.bsuir.medical_application.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Обслуживание секционированной таблицы notifications (см. V15).
+ * <p>
+ * Раз в сутки заранее создаёт помесячные секции, удаляет дубликаты за последнее окно, переносит
+ * прочитанные уведомления старше срока хранения в notifications_archive (или удаляет их) и удаляет
+ * опустевшие старые секции. Непрочитанные уведомления не архивируются и не удаляются как дубликаты,
+ * поэтому частичный индекс непрочитанных и индекс ленты остаются размером с «живые» данные.
+ * <p>
+ * Строки месяцев без секции попадают в notifications_default (см. V17) и переносятся при создании секции;
+ * непустая секция по умолчанию означает, что задача не успевала создавать секции заранее.
+ * На нескольких узлах задачу выполняет только узел, получивший advisory-блокировку.
+ */
+@Service
+@Slf4j
+public class NotificationRetentionService {
+
+    private static final String PARTITION_PREFIX = "notifications_";
+    private static final String DEFAULT_PARTITION = "notifications_default";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String COLUMNS = "notification_id, recipient_id, message, type, patient_id, patient_name, "
+            + "department_id, department_name, created_at, is_read";
+
+    private static final String SELECT_EXPIRED_SQL =
+            "SELECT notification_id, created_at FROM notifications "
+                    + "WHERE is_read = TRUE AND created_at < ? LIMIT ?";
+
+    // Считаются удалённые строки: вставка в архив пропускает уже заархивированные ID и дала бы меньшее число
+    private static final String ARCHIVE_SQL =
+            "WITH moved AS (DELETE FROM notifications WHERE (notification_id, created_at) IN (" + SELECT_EXPIRED_SQL + ") "
+                    + "RETURNING " + COLUMNS + "), "
+                    + "archived AS (INSERT INTO notifications_archive (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved "
+                    + "ON CONFLICT (notification_id) DO NOTHING) "
+                    + "SELECT COUNT(*) FROM moved";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM notifications WHERE (notification_id, created_at) IN (" + SELECT_EXPIRED_SQL + ")";
+
+    private static final String DEDUPLICATE_SQL =
+            "DELETE FROM notifications n USING ("
+                    + "SELECT notification_id, created_at FROM ("
+                    + "SELECT notification_id, created_at, ROW_NUMBER() OVER ("
+                    + "PARTITION BY recipient_id, type, patient_id, message "
+                    + "ORDER BY created_at DESC, notification_id DESC) AS position "
+                    + "FROM notifications WHERE created_at >= ?) ranked WHERE position > 1) duplicates "
+                    + "WHERE n.notification_id = duplicates.notification_id AND n.created_at = duplicates.created_at "
+                    + "AND n.is_read = TRUE";
+
+    private static final String SELECT_PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                    + "WHERE i.inhparent = 'notifications'::regclass";
+
+    private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock(hashtext('notification-retention'))";
+    private static final String UNLOCK_SQL = "SELECT pg_advisory_unlock(hashtext('notification-retention'))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final boolean archive;
+    private final long readRetentionDays;
+    private final int batchSize;
+    private final int partitionsAheadMonths;
+    private final long dedupeWindowHours;
+
+    private final AtomicLong runs = new AtomicLong(0);
+    private final AtomicLong archived = new AtomicLong(0);
+    private final AtomicLong deleted = new AtomicLong(0);
+    private final AtomicLong duplicatesRemoved = new AtomicLong(0);
+    private final AtomicLong partitionsCreated = new AtomicLong(0);
+    private final AtomicLong partitionsDropped = new AtomicLong(0);
+    private final AtomicLong rowsMovedFromDefault = new AtomicLong(0);
+    private final AtomicLong defaultPartitionRows = new AtomicLong(0);
+    private final AtomicLong skippedRuns = new AtomicLong(0);
+    private final AtomicLong lastRunMillis = new AtomicLong(0);
+
+    public NotificationRetentionService(JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${notifications.retention.enabled:true}") boolean enabled,
+                                        @Value("${notifications.retention.mode:archive}") String mode,
+                                        @Value("${notifications.retention.read-retention-days:90}") long readRetentionDays,
+                                        @Value("${notifications.retention.batch-size:5000}") int batchSize,
+                                        @Value("${notifications.retention.partitions-ahead-months:2}") int partitionsAheadMonths,
+                                        @Value("${notifications.retention.dedupe-window-hours:24}") long dedupeWindowHours) {
+        if (!"archive".equalsIgnoreCase(mode) && !"delete".equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("Unknown notification retention mode: " + mode);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Notification retention batch size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.archive = "archive".equalsIgnoreCase(mode);
+        this.readRetentionDays = readRetentionDays;
+        this.batchSize = batchSize;
+        this.partitionsAheadMonths = partitionsAheadMonths;
+        this.dedupeWindowHours = dedupeWindowHours;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createPartitionsOnStartup() {
+        if (enabled && !runExclusively(this::ensurePartitions)) {
+            log.info("Notification partitions are being maintained by another node");
+        }
+    }
+
+    @Scheduled(cron = "${notifications.retention.cron:0 15 3 * * *}")
+    public void runRetention() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            boolean ran = runExclusively(() -> {
+                ensurePartitions();
+                removeDuplicates();
+                expireReadNotifications();
+                dropEmptyPartitions();
+            });
+            if (ran) {
+                runs.incrementAndGet();
+            } else {
+                skippedRuns.incrementAndGet();
+                log.info("Notification retention is already running on another node, skipping");
+            }
+        } catch (Exception e) {
+            log.error("Notification retention failed: {}", e.getMessage(), e);
+        } finally {
+            lastRunMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("mode", archive ? "archive" : "delete");
+        stats.put("readRetentionDays", readRetentionDays);
+        stats.put("runs", runs.get());
+        stats.put("archived", archived.get());
+        stats.put("deleted", deleted.get());
+        stats.put("duplicatesRemoved", duplicatesRemoved.get());
+        stats.put("partitionsCreated", partitionsCreated.get());
+        stats.put("partitionsDropped", partitionsDropped.get());
+        stats.put("rowsMovedFromDefault", rowsMovedFromDefault.get());
+        stats.put("defaultPartitionRows", defaultPartitionRows.get());
+        stats.put("skippedRuns", skippedRuns.get());
+        stats.put("lastRunMillis", lastRunMillis.get());
+        return stats;
+    }
+
+    private void ensurePartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        List<String> existing = jdbcTemplate.queryForList(SELECT_PARTITIONS_SQL, String.class);
+        for (int offset = 0; offset <= partitionsAheadMonths; offset++) {
+            YearMonth month = current.plusMonths(offset);
+            String partition = partitionName(month);
+            if (existing.contains(partition)) {
+                continue;
+            }
+            createPartition(partition, month.atDay(1), month.plusMonths(1).atDay(1));
+        }
+        long stranded = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + DEFAULT_PARTITION, Long.class);
+        defaultPartitionRows.set(stranded);
+        if (stranded > 0) {
+            log.warn("{} notifications are stored in {}: monthly partitions were not created in time", stranded, DEFAULT_PARTITION);
+        }
+    }
+
+    /**
+     * Создаёт секцию отдельной таблицей, переносит в неё строки месяца из секции по умолчанию и подключает её
+     * в одной транзакции: подключение секции с диапазоном, строки которого остались в секции по умолчанию, невозможно
+     */
+    private void createPartition(String partition, LocalDate from, LocalDate to) {
+        String range = "created_at >= '" + from + "' AND created_at < '" + to + "'";
+        Integer moved = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE notifications INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int count = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION + " WHERE " + range
+                    + " RETURNING " + COLUMNS + ") INSERT INTO " + partition + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved");
+            jdbcTemplate.execute("ALTER TABLE notifications ATTACH PARTITION " + partition
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            return count;
+        });
+        partitionsCreated.incrementAndGet();
+        if (moved != null && moved > 0) {
+            rowsMovedFromDefault.addAndGet(moved);
+            log.warn("Created notifications partition {} and moved {} rows from {}", partition, moved, DEFAULT_PARTITION);
+        } else {
+            log.info("Created notifications partition {}", partition);
+        }
+    }
+
+    /**
+     * Выполняет задачу, только если advisory-блокировка обслуживания свободна. Блокировка сессионная,
+     * поэтому её держит отдельное соединение до конца задачи; при обрыве соединения она снимается сама.
+     * @return false, если задачу уже выполняет другой узел
+     */
+    private boolean runExclusively(Runnable task) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(TRY_LOCK_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || !rs.getBoolean(1)) {
+                    return false;
+                }
+            }
+            try {
+                task.run();
+            } finally {
+                try (PreparedStatement ps = connection.prepareStatement(UNLOCK_SQL)) {
+                    ps.execute();
+                }
+            }
+            return true;
+        }));
+    }
+
+    /**
+     * Удаляет прочитанные повторы одинаковых уведомлений (получатель, тип, пациент, текст) за окно дедупликации,
+     * если есть более новая копия. Непрочитанные тревоги и уведомления безопасности не удаляются никогда:
+     * каждое из них должно быть увидено получателем, и счётчики непрочитанных не меняются
+     */
+    private void removeDuplicates() {
+        Timestamp since = Timestamp.from(Instant.now().minus(dedupeWindowHours, ChronoUnit.HOURS));
+        int removed = jdbcTemplate.update(DEDUPLICATE_SQL, since);
+        duplicatesRemoved.addAndGet(removed);
+        if (removed > 0) {
+            log.info("Removed {} duplicate read notifications", removed);
+        }
+    }
+
+    /**
+     * Переносит в архив (или удаляет) прочитанные уведомления старше срока хранения пачками по batchSize
+     */
+    private void expireReadNotifications() {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(readRetentionDays, ChronoUnit.DAYS));
+        long total = 0;
+        long affected;
+        do {
+            affected = archive
+                    ? jdbcTemplate.queryForObject(ARCHIVE_SQL, Long.class, cutoff, batchSize)
+                    : jdbcTemplate.update(DELETE_SQL, cutoff, batchSize);
+            total += affected;
+        } while (affected >= batchSize);
+        (archive ? archived : deleted).addAndGet(total);
+        if (total > 0) {
+            log.info("{} {} read notifications older than {} days", archive ? "Archived" : "Deleted", total, readRetentionDays);
+        }
+    }
+
+    /**
+     * Удаляет секции, целиком лежащие за сроком хранения, если в них не осталось строк (например, непрочитанных)
+     */
+    private void dropEmptyPartitions() {
+        YearMonth cutoffMonth = YearMonth.from(Instant.now().minus(readRetentionDays, ChronoUnit.DAYS).atZone(ZoneOffset.UTC));
+        for (String partition : jdbcTemplate.queryForList(SELECT_PARTITIONS_SQL, String.class)) {
+            YearMonth month = parsePartitionMonth(partition);
+            if (month == null || !month.isBefore(cutoffMonth)) {
+                continue;
+            }
+            Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM " + partition + ")", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                partitionsDropped.incrementAndGet();
+                log.info("Dropped empty notifications partition {}", partition);
+            }
+        }
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    private static YearMonth parsePartitionMonth(String partition) {
+        if (!partition.matches(PARTITION_PREFIX + "\\d{4}_\\d{2}")) {
+            return null;
+        }
+        return YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+    }
+}
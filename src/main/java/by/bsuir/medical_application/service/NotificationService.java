@@ -1,35 +1,100 @@
 package by.bsuir.medical_application.service;
 
 import by.bsuir.medical_application.dto.NotificationDto;
-import by.bsuir.medical_application.model.Notification;
+import by.bsuir.medical_application.dto.NotificationPageDto;
+import by.bsuir.medical_application.exceptions.InvalidCursorException;
 import by.bsuir.medical_application.model.NotificationType;
 import by.bsuir.medical_application.model.User;
 import by.bsuir.medical_application.model.UserRole;
 import by.bsuir.medical_application.repository.NotificationRepository;
 import by.bsuir.medical_application.repository.UserRepository;
+import by.bsuir.medical_application.utils.NotificationCursor;
+import by.bsuir.medical_application.websocket.NotificationPushService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
+
+    private static final int DEFAULT_FEED_LIMIT = 50;
+    private static final int MAX_FEED_LIMIT = 200;
     
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
+    private final CareTeamDirectory careTeamDirectory;
+    private final NotificationWriter notificationWriter;
+    private final NotificationPushService notificationPushService;
+    private final UnreadCounterService unreadCounterService;
 
     public List<NotificationDto> getNotificationsForUser(Long userId) {
-        return notificationRepository.findTop50ByRecipientUserIdOrderByCreatedAtDesc(userId)
-                .stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return notificationRepository.findFeed(userId, Limit.of(DEFAULT_FEED_LIMIT));
+    }
+
+    /**
+     * Возвращает страницу ленты уведомлений пользователя, новые сверху.
+     * Без курсоров отдаётся начало ленты; before листает к более старым уведомлениям,
+     * since дочитывает появившиеся после курсора (начиная с ближайших к нему).
+     * @param userId ID получателя
+     * @param before курсор, старше которого нужны уведомления, или null
+     * @param since курсор, новее которого нужны уведомления, или null
+     * @param limit размер страницы
+     * @throws InvalidCursorException если переданы оба курсора или курсор повреждён
+     */
+    @Transactional(readOnly = true)
+    public NotificationPageDto getFeed(Long userId, String before, String since, int limit) {
+        if (before != null && since != null) {
+            throw new InvalidCursorException("Only one of 'before' and 'since' may be specified");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_LIMIT));
+        Limit fetchLimit = Limit.of(pageSize + 1);
+
+        List<NotificationDto> items;
+        if (before != null) {
+            NotificationCursor cursor = NotificationCursor.decode(before);
+            items = notificationRepository.findFeedBefore(userId, cursor.createdAt(), cursor.id(), fetchLimit);
+        } else if (since != null) {
+            NotificationCursor cursor = NotificationCursor.decode(since);
+            items = notificationRepository.findFeedSince(userId, cursor.createdAt(), cursor.id(), fetchLimit);
+        } else {
+            items = notificationRepository.findFeed(userId, fetchLimit);
+        }
+
+        return toPage(items, pageSize, before, since);
+    }
+
+    /**
+     * Возвращает общую ленту уведомлений врачей отделения, упорядоченную по времени, одним запросом
+     * вместо отдельного чтения ленты каждого врача
+     * @param departmentId ID отделения
+     * @param before курсор, старше которого нужны уведомления, или null для начала ленты
+     * @param limit размер страницы
+     */
+    @Transactional(readOnly = true)
+    public NotificationPageDto getDepartmentFeed(Long departmentId, String before, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_FEED_LIMIT));
+        Limit fetchLimit = Limit.of(pageSize + 1);
+
+        List<NotificationDto> items;
+        if (before != null) {
+            NotificationCursor cursor = NotificationCursor.decode(before);
+            items = notificationRepository.findDepartmentFeedBefore(departmentId, UserRole.DOCTOR,
+                    cursor.createdAt(), cursor.id(), fetchLimit);
+        } else {
+            items = notificationRepository.findDepartmentFeed(departmentId, UserRole.DOCTOR, fetchLimit);
+        }
+        return toPage(items, pageSize, before, null);
     }
     
     public List<NotificationDto> getNotificationsForDoctor(Long doctorId) {
@@ -41,34 +106,50 @@ public class NotificationService {
     }
 
     public long countUnread(Long userId) {
-        return notificationRepository.countByRecipientUserIdAndReadFalse(userId);
+        return unreadCounterService.get(userId);
     }
 
+    /**
+     * Отмечает уведомление прочитанным, если оно принадлежит пользователю
+     * @return количество изменённых уведомлений (0 или 1)
+     */
     @Transactional
-    public void markNotificationAsRead(Long notificationId, Long userId) {
-        Optional<Notification> notificationOpt = notificationRepository.findById(notificationId);
-        if (notificationOpt.isEmpty()) {
-            return;
-        }
-        Notification notification = notificationOpt.get();
-        if (!Objects.equals(notification.getRecipient().getUserId(), userId)) {
-            log.warn("User {} attempted to change notification {} read status", userId, notificationId);
-            return;
-        }
-        if (!notification.isRead()) {
-            notification.setRead(true);
-            notificationRepository.save(notification);
+    public int markNotificationAsRead(Long notificationId, Long userId) {
+        int updated = notificationRepository.markRead(notificationId, userId);
+        if (updated == 0) {
+            log.debug("Notification {} of user {} not found or already read", notificationId, userId);
         }
+        return afterMarkedRead(userId, updated);
     }
 
+    /**
+     * Отмечает все уведомления пользователя прочитанными одним UPDATE
+     * @return количество изменённых уведомлений
+     */
     @Transactional
-    public void markAllAsRead(Long userId) {
-        List<Notification> unreadNotifications = notificationRepository.findByRecipientUserIdAndReadFalse(userId);
-        if (unreadNotifications.isEmpty()) {
-            return;
-        }
-        unreadNotifications.forEach(notification -> notification.setRead(true));
-        notificationRepository.saveAll(unreadNotifications);
+    public int markAllAsRead(Long userId) {
+        return afterMarkedRead(userId, notificationRepository.markAllRead(userId));
+    }
+
+    /**
+     * Отмечает прочитанными уведомления ленты до курсора включительно
+     * @param cursor курсор из {@link NotificationPageDto}
+     * @return количество изменённых уведомлений
+     */
+    @Transactional
+    public int markReadUpTo(Long userId, String cursor) {
+        NotificationCursor position = NotificationCursor.decode(cursor);
+        return afterMarkedRead(userId, notificationRepository.markReadUpTo(userId, position.createdAt(), position.id()));
+    }
+
+    @Transactional
+    public int markReadByType(Long userId, NotificationType type) {
+        return afterMarkedRead(userId, notificationRepository.markReadByType(userId, type));
+    }
+
+    @Transactional
+    public int markReadByPatient(Long userId, Long patientId) {
+        return afterMarkedRead(userId, notificationRepository.markReadByPatient(userId, patientId));
     }
 
     public void notifyPatientTreatmentUpdated(User patient) {
@@ -127,34 +208,41 @@ public class NotificationService {
         if (patient == null || patient.getDepartment() == null) {
             return;
         }
-        List<User> doctors = userRepository.findByDepartmentIdAndRole(patient.getDepartment().getId(), UserRole.DOCTOR);
-        if (doctors.isEmpty()) {
+        List<Long> doctorIds = userRepository.findIdsByDepartmentIdAndRole(patient.getDepartment().getId(), UserRole.DOCTOR);
+        if (doctorIds.isEmpty()) {
             return;
         }
         String patientName = resolveFullName(patient);
         String deptName = patient.getDepartment().getName();
         String message = "Пациент " + patientName + " в отделении " + deptName + " пока без лечащего врача";
-        doctors.forEach(doctor -> createNotification(doctor, NotificationType.DOCTOR_PATIENT_WITHOUT_DOCTOR, message, patient));
+        notificationWriter.fanOut(doctorIds, template(NotificationType.DOCTOR_PATIENT_WITHOUT_DOCTOR, message, patient));
     }
 
+    /**
+     * Уведомляет лечащего врача об ухудшении показателей пациента.
+     * Врач и данные пациента берутся из {@link CareTeamDirectory}, поэтому пользователи из базы не читаются.
+     */
     public void notifyDoctorAboutIndicators(Long patientId, String category, String warning) {
-        Optional<User> patientOpt = userRepository.findById(patientId);
-        if (patientOpt.isEmpty()) {
+        Optional<CareTeamDirectory.CareTeam> careTeamOpt = careTeamDirectory.get(patientId);
+        if (careTeamOpt.isEmpty() || careTeamOpt.get().doctorId() == null) {
             return;
         }
-        User patient = patientOpt.get();
-        User doctor = patient.getAssignedDoctor();
-        if (doctor == null) {
-            return;
-        }
-        String patientName = resolveFullName(patient);
+        CareTeamDirectory.CareTeam careTeam = careTeamOpt.get();
         StringBuilder message = new StringBuilder("Показатели пациента ")
-                .append(patientName)
+                .append(careTeam.patientName())
                 .append(" ухудшились (").append(category).append(")");
         if (warning != null && !warning.isBlank()) {
             message.append(": ").append(warning);
         }
-        createNotification(doctor, NotificationType.DOCTOR_PATIENT_INDICATOR_ALERT, message.toString(), patient);
+        notificationWriter.enqueue(NotificationDto.builder()
+                .recipientId(careTeam.doctorId())
+                .type(NotificationType.DOCTOR_PATIENT_INDICATOR_ALERT)
+                .message(message.toString())
+                .patientId(careTeam.patientId())
+                .patientName(careTeam.patientName())
+                .departmentId(careTeam.departmentId())
+                .departmentName(careTeam.departmentName())
+                .build());
     }
 
     public void notifyAccountSecurityUpdate(User user, String details) {
@@ -182,8 +270,13 @@ public class NotificationService {
         if (recipient == null) {
             return;
         }
-        Notification notification = Notification.builder()
-                .recipient(recipient)
+        NotificationDto notification = template(type, message, patientContext);
+        notification.setRecipientId(recipient.getUserId());
+        notificationWriter.enqueue(notification);
+    }
+
+    private NotificationDto template(NotificationType type, String message, User patientContext) {
+        return NotificationDto.builder()
                 .type(type)
                 .message(message)
                 .patientId(patientContext != null ? patientContext.getUserId() : null)
@@ -192,26 +285,46 @@ public class NotificationService {
                         ? patientContext.getDepartment().getId() : null)
                 .departmentName(patientContext != null && patientContext.getDepartment() != null
                         ? patientContext.getDepartment().getName() : null)
-                        .read(false)
-                        .build();
-        notificationRepository.save(notification);
+                .build();
     }
 
-    private NotificationDto toDto(Notification notification) {
-        return NotificationDto.builder()
-                .id(notification.getId())
-                .recipientId(notification.getRecipient().getUserId())
-                .message(notification.getMessage())
-                .type(notification.getType())
-                .patientId(notification.getPatientId())
-                .patientName(notification.getPatientName())
-                .departmentId(notification.getDepartmentId())
-                .departmentName(notification.getDepartmentName())
-                .createdAt(notification.getCreatedAt())
-                .read(notification.isRead())
+    private NotificationPageDto toPage(List<NotificationDto> items, int pageSize, String before, String since) {
+        boolean hasMore = items.size() > pageSize;
+        List<NotificationDto> page = new ArrayList<>(hasMore ? items.subList(0, pageSize) : items);
+        if (since != null) {
+            Collections.reverse(page);
+        }
+        return NotificationPageDto.builder()
+                .items(page)
+                .newestCursor(page.isEmpty() ? since : NotificationCursor.of(page.get(0)).encode())
+                .oldestCursor(page.isEmpty() ? before : NotificationCursor.of(page.get(page.size() - 1)).encode())
+                .hasMore(hasMore)
                 .build();
     }
 
+    private int afterMarkedRead(Long userId, int updated) {
+        if (updated > 0) {
+            afterCommit(() -> {
+                unreadCounterService.decrement(userId, updated);
+                notificationPushService.pushUnreadCount(userId, unreadCounterService.get(userId));
+            });
+        }
+        return updated;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     private String resolveFullName(User user) {
         if (user == null) {
             return "без имени";
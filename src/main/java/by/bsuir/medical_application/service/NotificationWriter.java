@@ -0,0 +1,200 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.NotificationDto;
+import by.bsuir.medical_application.utils.BatchingQueueWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная запись уведомлений: вызывающий поток только кладёт уведомление в ограниченную очередь,
+ * фоновый поток пачками вставляет их в таблицу notifications через JDBC batch.
+ * Если вызов происходит внутри транзакции, уведомление ставится в очередь только после её фиксации.
+ * При переполнении очереди (шторм тревог) новые уведомления отбрасываются и учитываются в статистике.
+ */
+@Service
+@Slf4j
+public class NotificationWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notifications (recipient_id, message, type, patient_id, patient_name, "
+                    + "department_id, department_name, created_at, is_read) VALUES (?, ?, ?, ?, ?, ?, ?, ?, FALSE)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatchingQueueWriter<NotificationDto> writer;
+    private final AtomicLong rejectedRows = new AtomicLong(0);
+
+    public NotificationWriter(JdbcTemplate jdbcTemplate,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${notifications.writer.queue-capacity:20000}") int queueCapacity,
+                              @Value("${notifications.writer.batch-size:500}") int batchSize,
+                              @Value("${notifications.writer.max-latency-millis:200}") long maxLatencyMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.writer = new BatchingQueueWriter<>("notifications", queueCapacity, batchSize, maxLatencyMillis, this::insertBatch);
+    }
+
+    /**
+     * Ставит уведомление в очередь на запись, не блокируя вызывающий поток
+     * @param notification уведомление с заполненными recipientId, type и message
+     */
+    public void enqueue(NotificationDto notification) {
+        if (notification == null || notification.getRecipientId() == null) {
+            return;
+        }
+        if (notification.getCreatedAt() == null) {
+            // Точность TIMESTAMPTZ — микросекунды: курсор ленты из отправленного уведомления должен совпасть с записью в БД
+            notification.setCreatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(notification);
+                }
+            });
+        } else {
+            offer(notification);
+        }
+    }
+
+    /**
+     * Рассылает одно уведомление группе получателей. Общие поля берутся из шаблона один раз, строки
+     * ставятся в очередь подряд и поэтому записываются одним JDBC batch и рассылаются одним событием
+     * (если группа не больше размера пачки).
+     * @param recipientIds ID получателей
+     * @param template уведомление без recipientId
+     */
+    public void fanOut(Collection<Long> recipientIds, NotificationDto template) {
+        if (recipientIds.isEmpty()) {
+            return;
+        }
+        Instant createdAt = template.getCreatedAt() != null
+                ? template.getCreatedAt()
+                : Instant.now().truncatedTo(ChronoUnit.MICROS);
+        List<NotificationDto> notifications = new ArrayList<>(recipientIds.size());
+        for (Long recipientId : recipientIds) {
+            if (recipientId == null) {
+                continue;
+            }
+            notifications.add(template.toBuilder()
+                    .recipientId(recipientId)
+                    .createdAt(createdAt)
+                    .build());
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offerAll(notifications);
+                }
+            });
+        } else {
+            offerAll(notifications);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(writer.getStats());
+        stats.put("rejectedRows", rejectedRows.get());
+        return stats;
+    }
+
+    private void offer(NotificationDto notification) {
+        if (!writer.offer(notification)) {
+            log.warn("Notification queue is full, dropped {} notification for user {}",
+                    notification.getType(), notification.getRecipientId());
+        }
+    }
+
+    private void offerAll(List<NotificationDto> notifications) {
+        int accepted = writer.offerAll(notifications);
+        if (accepted < notifications.size()) {
+            log.warn("Notification queue is full, dropped {} of {} {} notifications",
+                    notifications.size() - accepted, notifications.size(), notifications.get(0).getType());
+        }
+    }
+
+    /**
+     * Сохраняет пачку одним JDBC batch. Если пачка отклонена нарушением целостности (например, получатель
+     * удалён, пока уведомление ждало в очереди), строки сохраняются по одной, и рассылаются только записанные
+     */
+    private void insertBatch(List<NotificationDto> batch) {
+        List<NotificationDto> written;
+        try {
+            insertRows(batch);
+            written = batch;
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Batch of {} notifications rejected ({}), retrying row by row", batch.size(), e.getMostSpecificCause().getMessage());
+            written = new ArrayList<>(batch.size());
+            for (NotificationDto notification : batch) {
+                try {
+                    insertRows(List.of(notification));
+                    written.add(notification);
+                } catch (DataIntegrityViolationException rowError) {
+                    log.debug("Rejected {} notification for user {}: {}", notification.getType(),
+                            notification.getRecipientId(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+            rejectedRows.addAndGet(batch.size() - written.size());
+            log.warn("Rejected {} of {} notifications that violate constraints", batch.size() - written.size(), batch.size());
+            if (written.isEmpty()) {
+                return;
+            }
+        }
+        log.debug("Persisted batch of {} notifications", written.size());
+        eventPublisher.publishEvent(new NotificationsWrittenEvent(List.copyOf(written)));
+    }
+
+    private void insertRows(List<NotificationDto> batch) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"notification_id"})) {
+                for (NotificationDto notification : batch) {
+                    ps.setLong(1, notification.getRecipientId());
+                    ps.setString(2, notification.getMessage());
+                    ps.setString(3, notification.getType().name());
+                    ps.setObject(4, notification.getPatientId(), Types.BIGINT);
+                    ps.setString(5, notification.getPatientName());
+                    ps.setObject(6, notification.getDepartmentId(), Types.BIGINT);
+                    ps.setString(7, notification.getDepartmentName());
+                    ps.setTimestamp(8, Timestamp.from(notification.getCreatedAt()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int index = 0;
+                    while (keys.next() && index < batch.size()) {
+                        batch.get(index++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+    }
+}
@@ -0,0 +1,11 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.NotificationDto;
+
+import java.util.List;
+
+/**
+ * Публикуется {@link NotificationWriter} после записи пачки уведомлений; у уведомлений заполнены id
+ */
+public record NotificationsWrittenEvent(List<NotificationDto> notifications) {
+}
@@ -0,0 +1,212 @@
+package by.bsuir.medical_application.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий планировщик мониторинга пациентов на основе хешированного колеса таймеров.
+ * Один поток-тикер обходит слоты колеса, а сами задачи пациентов выполняются
+ * в виртуальных потоках. Запуск и остановка мониторинга меняют только карту пациентов и один слот колеса
+ * и не требуют создания или завершения отдельных executor'ов.
+ * Нагрузочного теста на десятки тысяч пациентов в проекте нет; под нагрузкой за планировщиком следят
+ * по skippedTasks (такт пациента пропущен, потому что предыдущий ещё выполняется) в статистике мониторинга.
+ * Тикер работает только пока есть хотя бы один пациент; без пациентов его поток завершается.
+ */
+@Component
+@Slf4j
+public class PatientMonitoringScheduler {
+
+    private final long tickMillis;
+    private final int wheelSize;
+
+    private final List<Set<MonitoredPatient>> wheel;
+    private final Map<Long, MonitoredPatient> patients = new ConcurrentHashMap<>();
+
+    private final ScheduledThreadPoolExecutor ticker;
+    private final ExecutorService workers;
+    private final Object tickerLock = new Object();
+    private volatile ScheduledFuture<?> tickerTask;
+
+    private final AtomicLong tickCounter = new AtomicLong(0);
+    private final AtomicLong executedTasks = new AtomicLong(0);
+    private final AtomicLong skippedTasks = new AtomicLong(0);
+    private final AtomicLong failedTasks = new AtomicLong(0);
+
+    public PatientMonitoringScheduler(@Value("${monitoring.scheduler.tick-millis:100}") long tickMillis,
+                                      @Value("${monitoring.scheduler.wheel-size:10}") int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Monitoring scheduler tick and wheel size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.ticker = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "monitoring-wheel-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.setKeepAliveTime(1, TimeUnit.MINUTES);
+        this.ticker.allowCoreThreadTimeOut(true);
+        this.ticker.setRemoveOnCancelPolicy(true);
+        this.workers = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("monitoring-tick-", 0).factory());
+        log.info("Patient monitoring scheduler started: tick={}ms, wheel size={}, period={}ms",
+                tickMillis, wheelSize, getPeriodMillis());
+    }
+
+    /**
+     * Ставит задачу пациента на периодическое выполнение (раз в оборот колеса).
+     * Если пациент уже под мониторингом, текущая задача продолжает работать без перезапуска.
+     * @param patientId ID пациента
+     * @param task задача, выполняемая на каждом тике
+     * @return true если мониторинг запущен этим вызовом
+     */
+    public boolean start(Long patientId, Runnable task) {
+        int slot = (int) ((tickCounter.get() + 1) % wheelSize);
+        MonitoredPatient monitoredPatient = new MonitoredPatient(patientId, task, slot);
+        // Регистрация и вставка в колесо под одной блокировкой со stop(), иначе stop() между ними
+        // оставил бы в колесе задачу, которой нет в patients
+        synchronized (tickerLock) {
+            if (patients.putIfAbsent(patientId, monitoredPatient) != null) {
+                return false;
+            }
+            wheel.get(slot).add(monitoredPatient);
+            if (tickerTask == null && !ticker.isShutdown()) {
+                tickerTask = ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+                log.debug("Monitoring wheel ticker resumed");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Снимает задачу пациента с колеса. Уже запущенный тик завершится, новые не начнутся.
+     * @param patientId ID пациента
+     * @return true если пациент находился под мониторингом
+     */
+    public boolean stop(Long patientId) {
+        synchronized (tickerLock) {
+            MonitoredPatient monitoredPatient = patients.remove(patientId);
+            if (monitoredPatient == null) {
+                return false;
+            }
+            monitoredPatient.cancel();
+            wheel.get(monitoredPatient.slot).remove(monitoredPatient);
+            if (patients.isEmpty() && tickerTask != null) {
+                tickerTask.cancel(false);
+                tickerTask = null;
+                log.debug("Monitoring wheel ticker paused, no patients monitored");
+            }
+        }
+        return true;
+    }
+
+    public boolean isMonitored(Long patientId) {
+        return patients.containsKey(patientId);
+    }
+
+    public Set<Long> getMonitoredPatientIds() {
+        return Set.copyOf(patients.keySet());
+    }
+
+    public int getMonitoredCount() {
+        return patients.size();
+    }
+
+    public long getPeriodMillis() {
+        return tickMillis * wheelSize;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("monitoredPatients", patients.size());
+        stats.put("tickMillis", tickMillis);
+        stats.put("wheelSize", wheelSize);
+        stats.put("periodMillis", getPeriodMillis());
+        stats.put("ticks", tickCounter.get());
+        stats.put("executedTasks", executedTasks.get());
+        stats.put("skippedTasks", skippedTasks.get());
+        stats.put("failedTasks", failedTasks.get());
+        stats.put("tickerActive", tickerTask != null);
+        stats.put("shutdown", ticker.isShutdown());
+        return stats;
+    }
+
+    private void advance() {
+        try {
+            int slot = (int) (tickCounter.incrementAndGet() % wheelSize);
+            for (MonitoredPatient monitoredPatient : wheel.get(slot)) {
+                dispatch(monitoredPatient);
+            }
+        } catch (Exception e) {
+            log.error("Error advancing monitoring wheel: {}", e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(MonitoredPatient monitoredPatient) {
+        // Предыдущий тик пациента ещё выполняется — пропускаем, чтобы не накапливать задачи
+        if (!monitoredPatient.running.compareAndSet(false, true)) {
+            skippedTasks.incrementAndGet();
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                if (!monitoredPatient.cancelled) {
+                    monitoredPatient.task.run();
+                    executedTasks.incrementAndGet();
+                }
+            } catch (Exception e) {
+                failedTasks.incrementAndGet();
+                log.error("Error in monitoring task for patient {}: {}", monitoredPatient.patientId, e.getMessage(), e);
+            } finally {
+                monitoredPatient.running.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down patient monitoring scheduler, {} patients monitored", patients.size());
+        patients.clear();
+        wheel.forEach(Set::clear);
+        ticker.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private static final class MonitoredPatient {
+        private final Long patientId;
+        private final Runnable task;
+        private final int slot;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private volatile boolean cancelled;
+
+        private MonitoredPatient(Long patientId, Runnable task, int slot) {
+            this.patientId = patientId;
+            this.task = task;
+            this.slot = slot;
+        }
+
+        private void cancel() {
+            cancelled = true;
+        }
+    }
+}
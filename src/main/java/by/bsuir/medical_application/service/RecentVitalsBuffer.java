@@ -0,0 +1,240 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import by.bsuir.medical_application.dto.RecentVitalsDto;
+import by.bsuir.medical_application.utils.EpochTimeConverter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кольцевые буферы последних отсчётов пациентов для спарклайнов мониторинга.
+ * <p>
+ * Все буферы лежат в одном наборе примитивных массивов, выделенных при старте: пациенту выдаётся слот,
+ * и его отсчёты занимают диапазон [slot * capacity, (slot + 1) * capacity). Запись отсчёта не выделяет
+ * память, а объём памяти фиксирован: maxPatients * capacity * 13 байт (например, 10 000 коек по 300
+ * отсчётов — около 39 МБ). Слоты пациентов без новых данных освобождаются фоновой задачей.
+ */
+@Service
+@Slf4j
+public class RecentVitalsBuffer {
+
+    private static final int BYTES_PER_SAMPLE = Long.BYTES + Short.BYTES + Short.BYTES + Byte.BYTES;
+    private static final int NO_VALUE_16 = 0xFFFF;
+    private static final int NO_VALUE_8 = 0xFF;
+
+    private final int maxPatients;
+    private final int capacity;
+    private final long idleReleaseMillis;
+
+    private final long[] timestamps;
+    private final short[] heartrates;
+    private final short[] temperatures;
+    private final byte[] spo2Values;
+
+    private final int[] heads;
+    private final int[] counts;
+    private final long[] lastWriteMillis;
+    private final Object[] slotLocks;
+
+    private final Map<Long, Integer> slots = new ConcurrentHashMap<>();
+    private final Long[] slotOwners;
+    private final int[] freeSlots;
+    private int freeCount;
+
+    private final AtomicLong rejectedPatients = new AtomicLong(0);
+    private final ScheduledExecutorService releaser;
+
+    public RecentVitalsBuffer(@Value("${indicators.recent.max-patients:10000}") int maxPatients,
+                              @Value("${indicators.recent.capacity:300}") int capacity,
+                              @Value("${indicators.recent.idle-release-minutes:30}") long idleReleaseMinutes) {
+        if (maxPatients <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Recent vitals buffer size must be positive");
+        }
+        this.maxPatients = maxPatients;
+        this.capacity = capacity;
+        this.idleReleaseMillis = TimeUnit.MINUTES.toMillis(idleReleaseMinutes);
+
+        int totalSamples = Math.multiplyExact(maxPatients, capacity);
+        this.timestamps = new long[totalSamples];
+        this.heartrates = new short[totalSamples];
+        this.temperatures = new short[totalSamples];
+        this.spo2Values = new byte[totalSamples];
+
+        this.heads = new int[maxPatients];
+        this.counts = new int[maxPatients];
+        this.lastWriteMillis = new long[maxPatients];
+        this.slotLocks = new Object[maxPatients];
+        this.slotOwners = new Long[maxPatients];
+        this.freeSlots = new int[maxPatients];
+        for (int i = 0; i < maxPatients; i++) {
+            slotLocks[i] = new Object();
+            freeSlots[i] = maxPatients - 1 - i;
+        }
+        this.freeCount = maxPatients;
+
+        this.releaser = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recent-vitals-releaser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.releaser.scheduleWithFixedDelay(this::releaseIdleSlots, 1, 1, TimeUnit.MINUTES);
+        log.info("Recent vitals buffer allocated: {} patients x {} samples ({} KB)",
+                maxPatients, capacity, (long) totalSamples * BYTES_PER_SAMPLE / 1024);
+    }
+
+    /**
+     * Дописывает отсчёт в кольцевой буфер пациента, вытесняя самый старый
+     * @param indicators показатели с заполненными patientId и timestamp
+     */
+    public void record(MedicalIndicatorsDto indicators) {
+        if (indicators == null || indicators.getPatientId() == null) {
+            return;
+        }
+        int slot = acquireSlot(indicators.getPatientId());
+        if (slot < 0) {
+            return;
+        }
+        long timestamp = EpochTimeConverter.toEpochMillis(indicators.getTimestamp());
+        synchronized (slotLocks[slot]) {
+            // Слот мог быть освобождён и выдан другому пациенту между поиском и захватом монитора
+            if (!indicators.getPatientId().equals(slotOwners[slot])) {
+                return;
+            }
+            int index = slot * capacity + heads[slot];
+            timestamps[index] = timestamp;
+            heartrates[index] = (short) (indicators.getHeartrate() != null
+                    ? clamp(indicators.getHeartrate(), NO_VALUE_16 - 1) : NO_VALUE_16);
+            temperatures[index] = (short) (indicators.getTemperature() != null
+                    ? clamp(Math.round(indicators.getTemperature() * 10), NO_VALUE_16 - 1) : NO_VALUE_16);
+            spo2Values[index] = (byte) (indicators.getSpo2() != null
+                    ? clamp(indicators.getSpo2(), NO_VALUE_8 - 1) : NO_VALUE_8);
+            heads[slot] = heads[slot] + 1 == capacity ? 0 : heads[slot] + 1;
+            if (counts[slot] < capacity) {
+                counts[slot]++;
+            }
+            lastWriteMillis[slot] = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Возвращает отсчёты пациента за последние seconds секунд в порядке возрастания времени
+     * @param patientId ID пациента
+     * @param seconds глубина окна в секундах
+     * @return снимок буфера или пустой Optional, если пациент не отслеживается
+     */
+    public Optional<RecentVitalsDto> getRecent(Long patientId, long seconds) {
+        Integer slot = slots.get(patientId);
+        if (slot == null) {
+            return Optional.empty();
+        }
+        synchronized (slotLocks[slot]) {
+            if (!patientId.equals(slotOwners[slot])) {
+                return Optional.empty();
+            }
+            int count = counts[slot];
+            int base = slot * capacity;
+            int oldest = (heads[slot] - count + capacity) % capacity;
+            long newest = count > 0 ? timestamps[base + (heads[slot] - 1 + capacity) % capacity] : 0;
+            long threshold = newest - TimeUnit.SECONDS.toMillis(seconds);
+
+            int skip = 0;
+            while (skip < count && timestamps[base + (oldest + skip) % capacity] < threshold) {
+                skip++;
+            }
+            int size = count - skip;
+            long[] times = new long[size];
+            Integer[] heartrate = new Integer[size];
+            Double[] temperature = new Double[size];
+            Integer[] spo2 = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                int index = base + (oldest + skip + i) % capacity;
+                times[i] = timestamps[index];
+                int heartrateValue = Short.toUnsignedInt(heartrates[index]);
+                int temperatureValue = Short.toUnsignedInt(temperatures[index]);
+                int spo2Value = Byte.toUnsignedInt(spo2Values[index]);
+                heartrate[i] = heartrateValue != NO_VALUE_16 ? heartrateValue : null;
+                temperature[i] = temperatureValue != NO_VALUE_16 ? temperatureValue / 10.0 : null;
+                spo2[i] = spo2Value != NO_VALUE_8 ? spo2Value : null;
+            }
+            return Optional.of(RecentVitalsDto.builder()
+                    .patientId(patientId)
+                    .timestamps(times)
+                    .heartrate(heartrate)
+                    .temperature(temperature)
+                    .spo2(spo2)
+                    .build());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "maxPatients", maxPatients,
+                "capacity", capacity,
+                "usedSlots", slots.size(),
+                "allocatedBytes", (long) maxPatients * capacity * BYTES_PER_SAMPLE,
+                "rejectedPatients", rejectedPatients.get()
+        );
+    }
+
+    private int acquireSlot(Long patientId) {
+        Integer slot = slots.get(patientId);
+        if (slot != null) {
+            return slot;
+        }
+        synchronized (freeSlots) {
+            slot = slots.get(patientId);
+            if (slot != null) {
+                return slot;
+            }
+            if (freeCount == 0) {
+                rejectedPatients.incrementAndGet();
+                return -1;
+            }
+            int allocated = freeSlots[--freeCount];
+            synchronized (slotLocks[allocated]) {
+                slotOwners[allocated] = patientId;
+                heads[allocated] = 0;
+                counts[allocated] = 0;
+                lastWriteMillis[allocated] = System.currentTimeMillis();
+            }
+            slots.put(patientId, allocated);
+            return allocated;
+        }
+    }
+
+    private void releaseIdleSlots() {
+        long threshold = System.currentTimeMillis() - idleReleaseMillis;
+        slots.forEach((patientId, slot) -> {
+            synchronized (freeSlots) {
+                synchronized (slotLocks[slot]) {
+                    if (lastWriteMillis[slot] >= threshold || !patientId.equals(slotOwners[slot])) {
+                        return;
+                    }
+                    slotOwners[slot] = null;
+                    counts[slot] = 0;
+                }
+                slots.remove(patientId, slot);
+                freeSlots[freeCount++] = slot;
+            }
+        });
+    }
+
+    private static int clamp(long value, int max) {
+        return (int) Math.max(0, Math.min(max, value));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        releaser.shutdownNow();
+    }
+}
@@ -0,0 +1,149 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.NotificationDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Счётчики непрочитанных уведомлений по получателям в памяти.
+ * <p>
+ * При старте счётчики строятся одним GROUP BY по частичному индексу idx_notifications_unread, затем
+ * увеличиваются по {@link NotificationsWrittenEvent} и уменьшаются при отметке о прочтении, поэтому
+ * запрос бейджа — чтение из памяти без обращения к БД. До окончания построения счётчик читается из базы.
+ * Уведомления с ID не больше отметки, на которой строился снимок, уже учтены и повторно не прибавляются.
+ * <p>
+ * Счётчик никогда не сбрасывается в ноль, а только уменьшается на число действительно отмеченных строк:
+ * уведомление, записанное параллельно с «прочитать все», остаётся непрочитанным и учтённым. Уведомление
+ * может быть отмечено прочитанным раньше, чем применено его событие записи, поэтому счётчик временно
+ * уходит ниже нуля, а читается с отсечкой нулём.
+ * <p>
+ * В кластере (cluster.enabled=true) уведомления записываются и отмечаются прочитанными на разных узлах,
+ * поэтому счётчики в памяти не строятся и каждый запрос считается по частичному индексу непрочитанных.
+ * Новые уведомления запрашивают счётчик только на узле, к которому получатель подключён
+ * (см. NotificationPushService), поэтому число запросов ограничено числом пользователей онлайн.
+ */
+@Service
+@Slf4j
+public class UnreadCounterService {
+
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(notification_id), 0) FROM notifications";
+    private static final String COUNT_ALL_SQL =
+            "SELECT recipient_id, COUNT(*) FROM notifications "
+                    + "WHERE is_read = FALSE AND notification_id <= ? GROUP BY recipient_id";
+    private static final String COUNT_ONE_SQL =
+            "SELECT COUNT(*) FROM notifications WHERE is_read = FALSE AND recipient_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+    // Изменения счётчиков идут параллельно под read-блокировкой, построение снимка — под write-блокировкой
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready;
+    private long rebuiltUpToId;
+
+    private final AtomicLong databaseFallbacks = new AtomicLong(0);
+
+    private final boolean clustered;
+
+    public UnreadCounterService(JdbcTemplate jdbcTemplate,
+                                @Value("${cluster.enabled:false}") boolean clustered) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clustered = clustered;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (clustered) {
+            log.info("Cluster mode: unread counters are read from the database");
+            return;
+        }
+        rebuildLock.writeLock().lock();
+        try {
+            long watermark = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+            counters.clear();
+            RowCallbackHandler counterLoader = rs -> counters.put(rs.getLong(1), new AtomicLong(rs.getLong(2)));
+            jdbcTemplate.query(COUNT_ALL_SQL, counterLoader, watermark);
+            rebuiltUpToId = watermark;
+            ready = true;
+            log.info("Unread counters rebuilt for {} recipients up to notification {}", counters.size(), watermark);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Количество непрочитанных уведомлений пользователя
+     */
+    public long get(Long userId) {
+        if (!ready) {
+            databaseFallbacks.incrementAndGet();
+            Long count = jdbcTemplate.queryForObject(COUNT_ONE_SQL, Long.class, userId);
+            return count != null ? count : 0;
+        }
+        AtomicLong counter = counters.get(userId);
+        return counter != null ? Math.max(0, counter.get()) : 0;
+    }
+
+    /**
+     * Учитывает записанную пачку уведомлений; выполняется раньше рассылки, чтобы в ней были актуальные счётчики
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onNotificationsWritten(NotificationsWrittenEvent event) {
+        rebuildLock.readLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            for (NotificationDto notification : event.notifications()) {
+                if (notification.getId() != null && notification.getId() <= rebuiltUpToId) {
+                    continue;
+                }
+                counters.computeIfAbsent(notification.getRecipientId(), id -> new AtomicLong()).incrementAndGet();
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Уменьшает счётчик пользователя после отметки уведомлений прочитанными
+     * @param count количество уведомлений, отмеченных прочитанными
+     */
+    public void decrement(Long userId, long count) {
+        if (count <= 0) {
+            return;
+        }
+        rebuildLock.readLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            counters.computeIfAbsent(userId, id -> new AtomicLong()).addAndGet(-count);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "ready", ready,
+                "clustered", clustered,
+                "recipients", counters.size(),
+                "databaseFallbacks", databaseFallbacks.get()
+        );
+    }
+}
@@ -13,6 +13,7 @@ import by.bsuir.medical_application.repository.UserRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -28,6 +29,7 @@ public class UserService {
     private final DepartmentRepository departmentRepository;
     private final PasswordEncoder passwordEncoder;
     private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<User> getUnconfirmedUsers() {
         return userRepository.findAllByRole(UserRole.DEFAULT);
@@ -44,7 +46,7 @@ public class UserService {
                 log.info("User {} confirmed and assigned PATIENT role", user.getUsername());
             }
             
-            return userRepository.save(user);
+            return saveAndPublish(user);
         }
         throw new AccountUpdatingException("User not found with id: " + userId);
     }
@@ -65,7 +67,7 @@ public class UserService {
             }
             
             log.info("User {} role changed to {}", user.getUsername(), role);
-            return userRepository.save(user);
+            return saveAndPublish(user);
         }
         throw new AccountUpdatingException("User not found with id: " + userId);
     }
@@ -120,7 +122,7 @@ public class UserService {
         }
         
         log.info("Profile updated for user {}", user.getUsername());
-        return userRepository.save(user);
+        return saveAndPublish(user);
     }
 
     public User updateUserPassword(Long userId, UserUpdateDto userUpdateDto) {
@@ -153,6 +155,7 @@ public class UserService {
     public void deleteUser(Long userId) {
         if (userRepository.existsById(userId)) {
             userRepository.deleteById(userId);
+            eventPublisher.publishEvent(CareTeamChangedEvent.deleted(userId));
             log.info("User with id {} deleted", userId);
         } else {
             throw new AccountUpdatingException("User not found with id: " + userId);
@@ -233,7 +236,7 @@ public class UserService {
             }
             
             log.info("User {} updated by admin", user.getUsername());
-            return userRepository.save(user);
+            return saveAndPublish(user);
         }
         throw new AccountUpdatingException("User not found with id: " + userId);
     }
@@ -253,7 +256,7 @@ public class UserService {
             log.info("User {} confirmed, assigned NURSE role and department {}", 
                     user.getUsername(), department.getName());
             
-            return userRepository.save(user);
+            return saveAndPublish(user);
         }
         throw new AccountUpdatingException("User or department not found");
     }
@@ -328,12 +331,15 @@ public class UserService {
             }
             case DELETE -> {
                 userRepository.deleteAll(updatedUsers);
+                updatedUsers.forEach(user -> eventPublisher.publishEvent(CareTeamChangedEvent.deleted(user.getUserId())));
                 log.info("Bulk deleted {} users", updatedUsers.size());
                 return List.of();
             }
         }
 
-        return userRepository.saveAll(updatedUsers);
+        List<User> savedUsers = userRepository.saveAll(updatedUsers);
+        savedUsers.forEach(user -> eventPublisher.publishEvent(CareTeamChangedEvent.updated(user.getUserId())));
+        return savedUsers;
     }
 
     public int bulkConfirmUsers(List<Long> userIds) {
@@ -351,6 +357,7 @@ public class UserService {
         });
 
         userRepository.saveAll(users);
+        users.forEach(user -> eventPublisher.publishEvent(CareTeamChangedEvent.updated(user.getUserId())));
         log.info("Bulk confirmed {} users", users.size());
         return users.size();
     }
@@ -378,7 +385,7 @@ public class UserService {
         patient.setAssignedNurse(nurse);
         log.info("Nurse {} assigned to patient {}", nurse.getUsername(), patient.getUsername());
         
-        User updatedPatient = userRepository.save(patient);
+        User updatedPatient = saveAndPublish(patient);
         notificationService.notifyPatientAssignedNurse(updatedPatient);
         return updatedPatient;
     }
@@ -405,7 +412,7 @@ public class UserService {
         patient.setAssignedDoctor(doctor);
         log.info("Doctor {} assigned to patient {}", doctor.getUsername(), patient.getUsername());
         
-        User updatedPatient = userRepository.save(patient);
+        User updatedPatient = saveAndPublish(patient);
         notificationService.notifyPatientAssignedDoctor(updatedPatient);
         return updatedPatient;
     }
@@ -428,7 +435,7 @@ public class UserService {
         patient.setDepartment(department);
         log.info("Department {} assigned to patient {}", department.getName(), patient.getUsername());
         
-        User updatedPatient = userRepository.save(patient);
+        User updatedPatient = saveAndPublish(patient);
         notificationService.notifyPatientAssignedDepartment(updatedPatient);
         return updatedPatient;
     }
@@ -508,4 +515,10 @@ public class UserService {
     public List<User> getUsersByCreatedAtBetween(java.time.Instant startDate, java.time.Instant endDate) {
         return userRepository.findByCreatedAtBetween(startDate, endDate);
     }
+
+    private User saveAndPublish(User user) {
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(CareTeamChangedEvent.updated(saved.getUserId()));
+        return saved;
+    }
 }
@@ -0,0 +1,434 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import by.bsuir.medical_application.utils.BatchingQueueWriter;
+import by.bsuir.medical_application.utils.EpochTimeConverter;
+import by.bsuir.medical_application.utils.VitalsChunkEncoder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Хранилище истории показателей в виде сжатых блоков (см. {@link VitalsChunkEncoder}).
+ * Для каждого пациента в памяти держится открытый блок, в который дописываются новые отсчёты.
+ * Заполненный или простаивающий блок закрывается и пачкой сохраняется в таблицу indicator_chunks (bytea).
+ * Внутри блока время не убывает. Последние reorderWindow отсчётов открытого блока держатся несжатыми
+ * и упорядочиваются при вставке, поэтому слегка опоздавший отсчёт (например, из пачки шлюза или после
+ * повторной отправки) встаёт на своё место. Только отсчёт старше всего уже сжатого закрывает блок и начинает новый.
+ * <p>
+ * Это основное хранилище истории показателей; построчная таблица indicators
+ * ({@link IndicatorsPersistenceService}) включается только для совместимости.
+ * <p>
+ * Блок переходит из открытых в очередь записи, а из очереди — в базу данных, и на каждом шаге сначала
+ * появляется на новом месте, а потом исчезает со старого. Чтение обходит эти места в том же порядке,
+ * поэтому не пропускает блок, который переходит между ними, а повторно найденный блок учитывает один раз.
+ */
+@Service
+@Slf4j
+public class VitalsChunkStore {
+
+    private static final int NO_VALUE_16 = 0xFFFF;
+    private static final int NO_VALUE_8 = 0xFF;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO indicator_chunks (patient_id, start_time, end_time, sample_count, payload) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_RANGE_SQL =
+            "SELECT start_time, sample_count, payload FROM indicator_chunks "
+                    + "WHERE patient_id = ? AND end_time >= ? AND start_time <= ? ORDER BY start_time";
+    private static final String SELECT_LATEST_SQL =
+            "SELECT DISTINCT ON (patient_id) patient_id, sample_count, payload FROM indicator_chunks "
+                    + "WHERE patient_id = ANY (?) ORDER BY patient_id, start_time DESC";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int maxSamplesPerChunk;
+    private final long maxChunkSpanMillis;
+    private final long idleSealMillis;
+    private final int reorderWindow;
+
+    private final Map<Long, OpenChunk> openChunks = new ConcurrentHashMap<>();
+    // Закрытые блоки, которые ещё не записаны в базу данных
+    private final Map<Long, Set<SealedChunk>> unpersistedChunks = new ConcurrentHashMap<>();
+    private final BatchingQueueWriter<SealedChunk> writer;
+    private final ScheduledExecutorService sealer;
+
+    private final AtomicLong sealedChunks = new AtomicLong(0);
+    private final AtomicLong sealedSamples = new AtomicLong(0);
+    private final AtomicLong sealedBytes = new AtomicLong(0);
+    private final AtomicLong reorderedSamples = new AtomicLong(0);
+    private final AtomicLong outOfOrderSeals = new AtomicLong(0);
+
+    public VitalsChunkStore(JdbcTemplate jdbcTemplate,
+                            @Value("${indicators.chunks.enabled:true}") boolean enabled,
+                            @Value("${indicators.chunks.max-samples:3600}") int maxSamplesPerChunk,
+                            @Value("${indicators.chunks.max-span-minutes:60}") long maxChunkSpanMinutes,
+                            @Value("${indicators.chunks.idle-seal-minutes:5}") long idleSealMinutes,
+                            @Value("${indicators.chunks.reorder-window:16}") int reorderWindow,
+                            @Value("${indicators.chunks.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.maxSamplesPerChunk = maxSamplesPerChunk;
+        this.maxChunkSpanMillis = TimeUnit.MINUTES.toMillis(maxChunkSpanMinutes);
+        this.idleSealMillis = TimeUnit.MINUTES.toMillis(idleSealMinutes);
+        this.reorderWindow = Math.max(1, reorderWindow);
+        this.writer = new BatchingQueueWriter<>("indicator-chunks", queueCapacity, 100, 1000, this::insertBatch);
+        this.sealer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "indicator-chunks-sealer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sealer.scheduleWithFixedDelay(this::sealIdleChunks, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Дописывает показатели в открытый блок пациента, закрывая его при заполнении
+     * @param indicators показатели с заполненными patientId и timestamp
+     */
+    public void append(MedicalIndicatorsDto indicators) {
+        if (!enabled || indicators == null || indicators.getPatientId() == null || indicators.getTimestamp() == null) {
+            return;
+        }
+        Long patientId = indicators.getPatientId();
+        long timestamp = EpochTimeConverter.toEpochMillis(indicators.getTimestamp());
+        int heartrate = indicators.getHeartrate() != null
+                ? clamp(indicators.getHeartrate(), NO_VALUE_16 - 1) : NO_VALUE_16;
+        int temperature = indicators.getTemperature() != null
+                ? clamp(Math.round(indicators.getTemperature() * 10), NO_VALUE_16 - 1) : NO_VALUE_16;
+        int spo2 = indicators.getSpo2() != null ? clamp(indicators.getSpo2(), NO_VALUE_8 - 1) : NO_VALUE_8;
+
+        while (true) {
+            OpenChunk chunk = openChunks.computeIfAbsent(patientId, id -> new OpenChunk(maxSamplesPerChunk, reorderWindow));
+            synchronized (chunk) {
+                // Блок мог быть закрыт другим потоком между получением и захватом монитора
+                if (chunk.sealed) {
+                    continue;
+                }
+                // Место в хвосте освобождается до проверки: вытесненный отсчёт может оказаться позже нового
+                if (chunk.pendingCount == reorderWindow) {
+                    chunk.flushPending(1);
+                }
+                if (chunk.encoder.getCount() > 0 && timestamp < chunk.encoder.getLastTimestamp()) {
+                    outOfOrderSeals.incrementAndGet();
+                    seal(patientId, chunk);
+                    continue;
+                }
+                if (chunk.pendingCount > 0 && timestamp < chunk.pendingTimestamps[chunk.pendingCount - 1]) {
+                    reorderedSamples.incrementAndGet();
+                }
+                chunk.addPending(timestamp, heartrate, temperature, spo2);
+                chunk.lastAppendMillis = System.currentTimeMillis();
+                if (chunk.getCount() >= maxSamplesPerChunk
+                        || chunk.getLastTimestamp() - chunk.getFirstTimestamp() >= maxChunkSpanMillis) {
+                    seal(patientId, chunk);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Читает показатели пациента за период из закрытых блоков и открытого блока в памяти
+     * @param patientId ID пациента
+     * @param from начало периода
+     * @param to конец периода
+     * @return показатели в порядке возрастания времени
+     */
+    public List<MedicalIndicatorsDto> readRange(Long patientId, LocalDateTime from, LocalDateTime to) {
+        long fromMillis = EpochTimeConverter.toEpochMillis(from);
+        long toMillis = EpochTimeConverter.toEpochMillis(to);
+
+        // Блок пациента однозначно определяется временем первого отсчёта; из копий берётся самая полная
+        Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+        OpenChunk openChunk = openChunks.get(patientId);
+        if (openChunk != null) {
+            synchronized (openChunk) {
+                if (openChunk.getCount() > 0) {
+                    chunks.put(openChunk.getFirstTimestamp(), new ChunkSnapshot(openChunk.encoder.getCount(),
+                            openChunk.encoder.toBytes(), openChunk.copyPending()));
+                }
+            }
+        }
+        for (SealedChunk chunk : unpersistedChunks.getOrDefault(patientId, Set.of())) {
+            if (chunk.endMillis >= fromMillis && chunk.startMillis <= toMillis) {
+                addSnapshot(chunks, chunk.startMillis, chunk.sampleCount, chunk.payload);
+            }
+        }
+        RowCallbackHandler chunkCollector = rs -> addSnapshot(chunks, rs.getTimestamp("start_time").getTime(),
+                rs.getInt("sample_count"), rs.getBytes("payload"));
+        jdbcTemplate.query(SELECT_RANGE_SQL, chunkCollector,
+                patientId, Timestamp.from(Instant.ofEpochMilli(fromMillis)), Timestamp.from(Instant.ofEpochMilli(toMillis)));
+
+        List<MedicalIndicatorsDto> result = new ArrayList<>();
+        VitalsChunkEncoder.SampleConsumer collector = (timestamp, heartrate, temperature, spo2) -> {
+            if (timestamp >= fromMillis && timestamp <= toMillis) {
+                result.add(toDto(patientId, timestamp, heartrate, temperature, spo2));
+            }
+        };
+        chunks.values().forEach(chunk -> chunk.decode(collector));
+
+        result.sort(Comparator.comparing(MedicalIndicatorsDto::getTimestamp));
+        return result;
+    }
+
+    /**
+     * Последние показатели пациентов по открытым, ожидающим записи и последним сохранённым блокам.
+     * Используется кэшем последних показателей при промахе, когда построчное хранение выключено
+     * @param patientIds ID пациентов
+     * @return показатели пациентов, для которых есть данные
+     */
+    public List<MedicalIndicatorsDto> readLatest(List<Long> patientIds) {
+        Map<Long, long[]> latestTimestamps = new HashMap<>();
+        Map<Long, MedicalIndicatorsDto> latest = new HashMap<>();
+        for (Long patientId : patientIds) {
+            OpenChunk openChunk = openChunks.get(patientId);
+            if (openChunk != null) {
+                synchronized (openChunk) {
+                    if (openChunk.getCount() > 0) {
+                        collectLatest(latestTimestamps, latest, patientId, new ChunkSnapshot(openChunk.encoder.getCount(),
+                                openChunk.encoder.toBytes(), openChunk.copyPending()));
+                    }
+                }
+            }
+            for (SealedChunk chunk : unpersistedChunks.getOrDefault(patientId, Set.of())) {
+                collectLatest(latestTimestamps, latest, patientId, new ChunkSnapshot(chunk.sampleCount, chunk.payload, null));
+            }
+        }
+        RowCallbackHandler chunkCollector = rs -> collectLatest(latestTimestamps, latest, rs.getLong("patient_id"),
+                new ChunkSnapshot(rs.getInt("sample_count"), rs.getBytes("payload"), null));
+        jdbcTemplate.query(SELECT_LATEST_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("bigint", patientIds.toArray()));
+        }, chunkCollector);
+        return new ArrayList<>(latest.values());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(writer.getStats());
+        long samples = sealedSamples.get();
+        stats.put("openChunks", openChunks.size());
+        stats.put("sealedChunks", sealedChunks.get());
+        stats.put("sealedSamples", samples);
+        stats.put("sealedBytes", sealedBytes.get());
+        stats.put("bytesPerSample", samples > 0 ? (double) sealedBytes.get() / samples : 0.0);
+        stats.put("reorderedSamples", reorderedSamples.get());
+        stats.put("outOfOrderSeals", outOfOrderSeals.get());
+        return stats;
+    }
+
+    private void seal(Long patientId, OpenChunk chunk) {
+        chunk.sealed = true;
+        chunk.flushPending(chunk.pendingCount);
+        VitalsChunkEncoder encoder = chunk.encoder;
+        if (encoder.getCount() == 0) {
+            openChunks.remove(patientId, chunk);
+            return;
+        }
+        byte[] payload = encoder.toBytes();
+        sealedChunks.incrementAndGet();
+        sealedSamples.addAndGet(encoder.getCount());
+        sealedBytes.addAndGet(payload.length);
+        SealedChunk sealedChunk = new SealedChunk(patientId, encoder.getMinTimestamp(), encoder.getMaxTimestamp(),
+                encoder.getCount(), payload);
+        // Блок попадает в очередь записи до удаления из открытых, чтобы чтение не пропустило его
+        unpersistedChunks.computeIfAbsent(patientId, id -> ConcurrentHashMap.newKeySet()).add(sealedChunk);
+        if (!writer.offer(sealedChunk)) {
+            forget(sealedChunk);
+        }
+        openChunks.remove(patientId, chunk);
+    }
+
+    private void forget(SealedChunk chunk) {
+        unpersistedChunks.computeIfPresent(chunk.patientId, (id, chunks) -> {
+            chunks.remove(chunk);
+            return chunks.isEmpty() ? null : chunks;
+        });
+    }
+
+    private static void addSnapshot(Map<Long, ChunkSnapshot> chunks, long startMillis, int sampleCount, byte[] payload) {
+        chunks.merge(startMillis, new ChunkSnapshot(sampleCount, payload, null),
+                (existing, candidate) -> candidate.totalCount() > existing.totalCount() ? candidate : existing);
+    }
+
+    private static void collectLatest(Map<Long, long[]> latestTimestamps, Map<Long, MedicalIndicatorsDto> latest,
+                                      Long patientId, ChunkSnapshot chunk) {
+        long[] latestTimestamp = latestTimestamps.computeIfAbsent(patientId, id -> new long[]{Long.MIN_VALUE});
+        chunk.decode((timestamp, heartrate, temperature, spo2) -> {
+            if (timestamp > latestTimestamp[0]) {
+                latestTimestamp[0] = timestamp;
+                latest.put(patientId, toDto(patientId, timestamp, heartrate, temperature, spo2));
+            }
+        });
+    }
+
+    private void sealIdleChunks() {
+        long threshold = System.currentTimeMillis() - idleSealMillis;
+        openChunks.forEach((patientId, chunk) -> {
+            synchronized (chunk) {
+                if (!chunk.sealed && chunk.lastAppendMillis < threshold) {
+                    seal(patientId, chunk);
+                }
+            }
+        });
+    }
+
+    private void insertBatch(List<SealedChunk> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, chunk) -> {
+                ps.setLong(1, chunk.patientId);
+                ps.setTimestamp(2, Timestamp.from(Instant.ofEpochMilli(chunk.startMillis)));
+                ps.setTimestamp(3, Timestamp.from(Instant.ofEpochMilli(chunk.endMillis)));
+                ps.setInt(4, chunk.sampleCount);
+                ps.setBytes(5, chunk.payload);
+            });
+        } finally {
+            // Записанные блоки читаются из базы данных; не записанные уже не будут записаны
+            batch.forEach(this::forget);
+        }
+    }
+
+    private static int clamp(long value, int max) {
+        return (int) Math.max(0, Math.min(max, value));
+    }
+
+    private static MedicalIndicatorsDto toDto(Long patientId, long timestamp, int heartrate, int temperature, int spo2) {
+        return MedicalIndicatorsDto.builder()
+                .patientId(patientId)
+                .timestamp(EpochTimeConverter.toLocalDateTime(timestamp))
+                .heartrate(heartrate != NO_VALUE_16 ? heartrate : null)
+                .temperature(temperature != NO_VALUE_16 ? temperature / 10.0 : null)
+                .spo2(spo2 != NO_VALUE_8 ? spo2 : null)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sealer.shutdownNow();
+        openChunks.forEach((patientId, chunk) -> {
+            synchronized (chunk) {
+                if (!chunk.sealed) {
+                    seal(patientId, chunk);
+                }
+            }
+        });
+        writer.shutdown();
+    }
+
+    private static final class OpenChunk {
+        private final VitalsChunkEncoder encoder;
+        // Несжатый хвост блока, упорядоченный по времени; все его отсчёты не раньше последнего сжатого
+        private final long[] pendingTimestamps;
+        private final int[] pendingHeartrates;
+        private final int[] pendingTemperatures;
+        private final int[] pendingSpo2;
+        private int pendingCount;
+        private volatile long lastAppendMillis = System.currentTimeMillis();
+        private boolean sealed;
+
+        private OpenChunk(int expectedSamples, int reorderWindow) {
+            this.encoder = new VitalsChunkEncoder(expectedSamples);
+            this.pendingTimestamps = new long[reorderWindow];
+            this.pendingHeartrates = new int[reorderWindow];
+            this.pendingTemperatures = new int[reorderWindow];
+            this.pendingSpo2 = new int[reorderWindow];
+        }
+
+        private int getCount() {
+            return encoder.getCount() + pendingCount;
+        }
+
+        private long getFirstTimestamp() {
+            return encoder.getCount() > 0 ? encoder.getFirstTimestamp() : pendingTimestamps[0];
+        }
+
+        private long getLastTimestamp() {
+            return pendingCount > 0 ? pendingTimestamps[pendingCount - 1] : encoder.getLastTimestamp();
+        }
+
+        /**
+         * Вставляет отсчёт в хвост по времени; в хвосте должно быть свободное место
+         */
+        private void addPending(long timestamp, int heartrate, int temperature, int spo2) {
+            int position = pendingCount;
+            while (position > 0 && pendingTimestamps[position - 1] > timestamp) {
+                position--;
+            }
+            int tail = pendingCount - position;
+            System.arraycopy(pendingTimestamps, position, pendingTimestamps, position + 1, tail);
+            System.arraycopy(pendingHeartrates, position, pendingHeartrates, position + 1, tail);
+            System.arraycopy(pendingTemperatures, position, pendingTemperatures, position + 1, tail);
+            System.arraycopy(pendingSpo2, position, pendingSpo2, position + 1, tail);
+            pendingTimestamps[position] = timestamp;
+            pendingHeartrates[position] = heartrate;
+            pendingTemperatures[position] = temperature;
+            pendingSpo2[position] = spo2;
+            pendingCount++;
+        }
+
+        private void flushPending(int samples) {
+            for (int i = 0; i < samples; i++) {
+                encoder.append(pendingTimestamps[i], pendingHeartrates[i], pendingTemperatures[i], pendingSpo2[i]);
+            }
+            int remaining = pendingCount - samples;
+            System.arraycopy(pendingTimestamps, samples, pendingTimestamps, 0, remaining);
+            System.arraycopy(pendingHeartrates, samples, pendingHeartrates, 0, remaining);
+            System.arraycopy(pendingTemperatures, samples, pendingTemperatures, 0, remaining);
+            System.arraycopy(pendingSpo2, samples, pendingSpo2, 0, remaining);
+            pendingCount = remaining;
+        }
+
+        private PendingSamples copyPending() {
+            return new PendingSamples(Arrays.copyOf(pendingTimestamps, pendingCount),
+                    Arrays.copyOf(pendingHeartrates, pendingCount),
+                    Arrays.copyOf(pendingTemperatures, pendingCount),
+                    Arrays.copyOf(pendingSpo2, pendingCount));
+        }
+    }
+
+    /**
+     * Копия блока для чтения: сжатая часть и, для открытого блока, несжатый хвост
+     */
+    private record ChunkSnapshot(int sampleCount, byte[] payload, PendingSamples pending) {
+
+        int totalCount() {
+            return sampleCount + (pending != null ? pending.timestamps().length : 0);
+        }
+
+        void decode(VitalsChunkEncoder.SampleConsumer consumer) {
+            if (sampleCount > 0) {
+                VitalsChunkEncoder.decode(payload, sampleCount, consumer);
+            }
+            if (pending != null) {
+                for (int i = 0; i < pending.timestamps().length; i++) {
+                    consumer.accept(pending.timestamps()[i], pending.heartrates()[i],
+                            pending.temperatures()[i], pending.spo2()[i]);
+                }
+            }
+        }
+    }
+
+    private record PendingSamples(long[] timestamps, int[] heartrates, int[] temperatures, int[] spo2) {
+    }
+
+    private record SealedChunk(Long patientId, long startMillis, long endMillis, int sampleCount, byte[] payload) {
+    }
+}
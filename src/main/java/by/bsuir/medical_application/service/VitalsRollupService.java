@@ -0,0 +1,480 @@
+package by.bsuir.medical_application.service;
+
+import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import by.bsuir.medical_application.dto.VitalsRollupPointDto;
+import by.bsuir.medical_application.dto.VitalsTrendDto;
+import by.bsuir.medical_application.model.RollupResolution;
+import by.bsuir.medical_application.utils.BatchingQueueWriter;
+import by.bsuir.medical_application.utils.EpochTimeConverter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инкрементальные агрегаты показателей пациентов (1 минута / 5 минут / 1 час).
+ * Каждое поступившее значение обновляет открытые корзины всех разрешений в памяти; закрытые корзины
+ * пачками сохраняются в таблицу indicator_rollups через upsert, поэтому запоздавшие значения
+ * дослияются в уже сохранённую корзину.
+ * <p>
+ * Корзина переходит из открытых в очередь записи, а из очереди — в базу данных. Чтение тренда берёт открытые
+ * и ожидающие записи корзины под монитором пациента, а базу читает под read-блокировкой, пока запись пачки
+ * идёт под write-блокировкой. Поэтому каждая корзина учитывается ровно один раз: сумма корзин при повторном
+ * учёте исказила бы агрегаты, в отличие от блоков {@link VitalsChunkStore}, где дубликат просто отбрасывается.
+ */
+@Service
+@Slf4j
+public class VitalsRollupService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO indicator_rollups AS r (patient_id, resolution, bucket_start, sample_count, last_time, "
+                    + "hr_count, hr_min, hr_max, hr_sum, hr_last, "
+                    + "temp_count, temp_min, temp_max, temp_sum, temp_last, "
+                    + "spo2_count, spo2_min, spo2_max, spo2_sum, spo2_last) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+                    + "ON CONFLICT (patient_id, resolution, bucket_start) DO UPDATE SET "
+                    + "sample_count = r.sample_count + EXCLUDED.sample_count, "
+                    + "last_time = GREATEST(r.last_time, EXCLUDED.last_time), "
+                    + metricUpsert("hr") + ", " + metricUpsert("temp") + ", " + metricUpsert("spo2");
+    private static final String SELECT_RANGE_SQL =
+            "SELECT * FROM indicator_rollups WHERE patient_id = ? AND resolution = ? "
+                    + "AND bucket_start >= ? AND bucket_start <= ? ORDER BY bucket_start";
+
+    private static final RollupResolution[] RESOLUTIONS = RollupResolution.values();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final long closeGraceMillis;
+    private final int maxPoints;
+
+    private final Map<Long, PatientBuckets> openBuckets = new ConcurrentHashMap<>();
+    // Закрытые корзины, которые ещё не записаны в базу данных
+    private final Map<Long, Set<ClosedBucket>> unpersistedBuckets = new ConcurrentHashMap<>();
+    // Запись пачки в базу и удаление её из unpersistedBuckets — под write-блокировкой, чтение тренда — под read
+    private final ReadWriteLock persistLock = new ReentrantReadWriteLock();
+    private final BatchingQueueWriter<ClosedBucket> writer;
+    private final ScheduledExecutorService closer;
+
+    public VitalsRollupService(JdbcTemplate jdbcTemplate,
+                               @Value("${indicators.rollups.enabled:true}") boolean enabled,
+                               @Value("${indicators.rollups.close-grace-seconds:10}") long closeGraceSeconds,
+                               @Value("${indicators.rollups.max-points:2000}") int maxPoints,
+                               @Value("${indicators.rollups.queue-capacity:50000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.closeGraceMillis = TimeUnit.SECONDS.toMillis(closeGraceSeconds);
+        this.maxPoints = maxPoints;
+        this.writer = new BatchingQueueWriter<>("indicator-rollups", queueCapacity, 500, 1000, this::upsertBatch);
+        this.closer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "indicator-rollups-closer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.closer.scheduleWithFixedDelay(this::closeElapsedBuckets, 10, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Учитывает показатели в открытых корзинах всех разрешений
+     * @param indicators показатели с заполненными patientId и timestamp
+     */
+    public void record(MedicalIndicatorsDto indicators) {
+        if (!enabled || indicators == null || indicators.getPatientId() == null || indicators.getTimestamp() == null) {
+            return;
+        }
+        Long patientId = indicators.getPatientId();
+        long timestamp = EpochTimeConverter.toEpochMillis(indicators.getTimestamp());
+
+        while (true) {
+            PatientBuckets state = openBuckets.computeIfAbsent(patientId, id -> new PatientBuckets());
+            synchronized (state) {
+                // Состояние могло быть освобождено закрывающим потоком между получением и захватом монитора
+                if (state.retired) {
+                    continue;
+                }
+                for (RollupResolution resolution : RESOLUTIONS) {
+                    long bucketStart = resolution.bucketStart(timestamp);
+                    Bucket open = state.buckets[resolution.ordinal()];
+                    if (open == null || bucketStart > open.start) {
+                        if (open != null) {
+                            enqueue(new ClosedBucket(patientId, resolution, open));
+                        }
+                        open = new Bucket(bucketStart);
+                        state.buckets[resolution.ordinal()] = open;
+                    } else if (bucketStart < open.start) {
+                        // Запоздавшее значение: отдельная корзина дослияется в сохранённую через upsert
+                        Bucket late = new Bucket(bucketStart);
+                        late.add(timestamp, indicators);
+                        enqueue(new ClosedBucket(patientId, resolution, late));
+                        continue;
+                    }
+                    open.add(timestamp, indicators);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Возвращает тренд показателей пациента за период с разрешением, подобранным под бюджет точек
+     * ({@link RollupResolution#forRange}). В тренд входят сохранённые корзины, ожидающие записи и открытые
+     * @param patientId ID пациента
+     * @param from начало периода
+     * @param to конец периода
+     * @param requestedPoints желаемое максимальное количество точек
+     * @return агрегаты по корзинам в порядке возрастания времени
+     */
+    public VitalsTrendDto getTrend(Long patientId, LocalDateTime from, LocalDateTime to, int requestedPoints) {
+        long fromMillis = EpochTimeConverter.toEpochMillis(from);
+        long toMillis = EpochTimeConverter.toEpochMillis(to);
+        int pointBudget = Math.max(1, Math.min(requestedPoints, maxPoints));
+        RollupResolution resolution = RollupResolution.forRange(toMillis - fromMillis, pointBudget);
+        long firstBucket = resolution.bucketStart(fromMillis);
+
+        TreeMap<Long, Bucket> buckets = new TreeMap<>();
+        persistLock.readLock().lock();
+        try {
+            // Открытая корзина и очередь записи читаются под монитором пациента, поэтому корзина,
+            // закрывающаяся в этот момент, попадает ровно в одно из этих мест
+            PatientBuckets state = openBuckets.get(patientId);
+            if (state != null) {
+                synchronized (state) {
+                    Bucket open = state.buckets[resolution.ordinal()];
+                    if (open != null) {
+                        mergeInRange(buckets, open, firstBucket, toMillis);
+                    }
+                    mergeUnpersisted(buckets, patientId, resolution, firstBucket, toMillis);
+                }
+            } else {
+                mergeUnpersisted(buckets, patientId, resolution, firstBucket, toMillis);
+            }
+            RowCallbackHandler rowReader = rs -> {
+                Bucket bucket = readBucket(rs);
+                buckets.merge(bucket.start, bucket, Bucket::merge);
+            };
+            jdbcTemplate.query(SELECT_RANGE_SQL, rowReader, patientId, resolution.getCode(),
+                    toTimestamp(firstBucket), toTimestamp(toMillis));
+        } finally {
+            persistLock.readLock().unlock();
+        }
+
+        List<VitalsRollupPointDto> points = new ArrayList<>(buckets.size());
+        buckets.values().forEach(bucket -> points.add(bucket.toDto()));
+        return VitalsTrendDto.builder()
+                .patientId(patientId)
+                .resolution(resolution)
+                .from(from)
+                .to(to)
+                .points(points)
+                .build();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(writer.getStats());
+        stats.put("openPatients", openBuckets.size());
+        stats.put("unpersistedPatients", unpersistedBuckets.size());
+        return stats;
+    }
+
+    private void enqueue(ClosedBucket closed) {
+        // Корзина попадает в ожидающие записи до постановки в очередь, чтобы чтение тренда не пропустило её
+        unpersistedBuckets.computeIfAbsent(closed.patientId(), id -> ConcurrentHashMap.newKeySet()).add(closed);
+        if (!writer.offer(closed)) {
+            forget(closed);
+        }
+    }
+
+    private void forget(ClosedBucket closed) {
+        unpersistedBuckets.computeIfPresent(closed.patientId(), (id, closedBuckets) -> {
+            closedBuckets.remove(closed);
+            return closedBuckets.isEmpty() ? null : closedBuckets;
+        });
+    }
+
+    private void mergeUnpersisted(TreeMap<Long, Bucket> buckets, Long patientId, RollupResolution resolution,
+                                  long firstBucket, long toMillis) {
+        for (ClosedBucket closed : unpersistedBuckets.getOrDefault(patientId, Set.of())) {
+            if (closed.resolution() == resolution) {
+                mergeInRange(buckets, closed.bucket(), firstBucket, toMillis);
+            }
+        }
+    }
+
+    private static void mergeInRange(TreeMap<Long, Bucket> buckets, Bucket bucket, long firstBucket, long toMillis) {
+        if (bucket.start >= firstBucket && bucket.start <= toMillis) {
+            // Копия: корзины в памяти не меняются при сборке тренда
+            buckets.computeIfAbsent(bucket.start, Bucket::new).merge(bucket);
+        }
+    }
+
+    private void closeElapsedBuckets() {
+        long now = System.currentTimeMillis();
+        openBuckets.forEach((patientId, state) -> {
+            synchronized (state) {
+                boolean anyOpen = false;
+                for (RollupResolution resolution : RESOLUTIONS) {
+                    Bucket open = state.buckets[resolution.ordinal()];
+                    if (open == null) {
+                        continue;
+                    }
+                    if (open.start + resolution.getStepMillis() + closeGraceMillis <= now) {
+                        enqueue(new ClosedBucket(patientId, resolution, open));
+                        state.buckets[resolution.ordinal()] = null;
+                    } else {
+                        anyOpen = true;
+                    }
+                }
+                if (!anyOpen) {
+                    state.retired = true;
+                    openBuckets.remove(patientId, state);
+                }
+            }
+        });
+    }
+
+    private void upsertBatch(List<ClosedBucket> batch) {
+        // Одна и та же корзина может встретиться в пачке несколько раз (запоздавшие значения),
+        // а upsert не может изменить одну строку дважды за инструкцию
+        // Корзины сливаются в копии: исходные ещё видны чтению тренда через unpersistedBuckets
+        Map<BucketKey, Bucket> merged = new LinkedHashMap<>();
+        for (ClosedBucket closed : batch) {
+            BucketKey key = new BucketKey(closed.patientId(), closed.resolution(), closed.bucket().start);
+            merged.computeIfAbsent(key, k -> new Bucket(k.start())).merge(closed.bucket());
+        }
+        List<Map.Entry<BucketKey, Bucket>> rows = new ArrayList<>(merged.entrySet());
+        persistLock.writeLock().lock();
+        try {
+            upsertRows(rows);
+        } finally {
+            // Записанные корзины читаются из базы данных; не записанные уже не будут записаны
+            batch.forEach(this::forget);
+            persistLock.writeLock().unlock();
+        }
+        log.debug("Upserted {} rollup buckets", rows.size());
+    }
+
+    private void upsertRows(List<Map.Entry<BucketKey, Bucket>> rows) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), (ps, row) -> {
+            BucketKey key = row.getKey();
+            Bucket bucket = row.getValue();
+            ps.setLong(1, key.patientId());
+            ps.setString(2, key.resolution().getCode());
+            ps.setTimestamp(3, toTimestamp(key.start()));
+            ps.setLong(4, bucket.sampleCount);
+            ps.setTimestamp(5, toTimestamp(bucket.lastMillis));
+            bucket.heartrate.bind(ps, 6, Types.INTEGER);
+            bucket.temperature.bind(ps, 11, Types.DOUBLE);
+            bucket.spo2.bind(ps, 16, Types.INTEGER);
+        });
+    }
+
+    private static Bucket readBucket(ResultSet rs) throws SQLException {
+        Bucket bucket = new Bucket(rs.getTimestamp("bucket_start").getTime());
+        bucket.sampleCount = rs.getLong("sample_count");
+        bucket.lastMillis = rs.getTimestamp("last_time").getTime();
+        bucket.heartrate.read(rs, "hr");
+        bucket.temperature.read(rs, "temp");
+        bucket.spo2.read(rs, "spo2");
+        return bucket;
+    }
+
+    private static String metricUpsert(String prefix) {
+        return prefix + "_count = r." + prefix + "_count + EXCLUDED." + prefix + "_count, "
+                + prefix + "_min = LEAST(r." + prefix + "_min, EXCLUDED." + prefix + "_min), "
+                + prefix + "_max = GREATEST(r." + prefix + "_max, EXCLUDED." + prefix + "_max), "
+                + prefix + "_sum = r." + prefix + "_sum + EXCLUDED." + prefix + "_sum, "
+                + prefix + "_last = CASE WHEN EXCLUDED.last_time >= r.last_time "
+                + "THEN COALESCE(EXCLUDED." + prefix + "_last, r." + prefix + "_last) "
+                + "ELSE COALESCE(r." + prefix + "_last, EXCLUDED." + prefix + "_last) END";
+    }
+
+    private static Timestamp toTimestamp(long epochMillis) {
+        return Timestamp.from(Instant.ofEpochMilli(epochMillis));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closer.shutdownNow();
+        openBuckets.forEach((patientId, state) -> {
+            synchronized (state) {
+                for (RollupResolution resolution : RESOLUTIONS) {
+                    Bucket open = state.buckets[resolution.ordinal()];
+                    if (open != null) {
+                        enqueue(new ClosedBucket(patientId, resolution, open));
+                        state.buckets[resolution.ordinal()] = null;
+                    }
+                }
+                state.retired = true;
+            }
+        });
+        writer.shutdown();
+    }
+
+    private static final class PatientBuckets {
+        private final Bucket[] buckets = new Bucket[RESOLUTIONS.length];
+        private boolean retired;
+    }
+
+    private static final class Bucket {
+        private final long start;
+        private long sampleCount;
+        private long lastMillis = Long.MIN_VALUE;
+        private final Metric heartrate = new Metric();
+        private final Metric temperature = new Metric();
+        private final Metric spo2 = new Metric();
+
+        private Bucket(long start) {
+            this.start = start;
+        }
+
+        private void add(long timestamp, MedicalIndicatorsDto indicators) {
+            boolean latest = timestamp >= lastMillis;
+            if (latest) {
+                lastMillis = timestamp;
+            }
+            sampleCount++;
+            heartrate.add(indicators.getHeartrate(), latest);
+            temperature.add(indicators.getTemperature(), latest);
+            spo2.add(indicators.getSpo2(), latest);
+        }
+
+        private Bucket merge(Bucket other) {
+            boolean otherLatest = other.lastMillis >= lastMillis;
+            sampleCount += other.sampleCount;
+            lastMillis = Math.max(lastMillis, other.lastMillis);
+            heartrate.merge(other.heartrate, otherLatest);
+            temperature.merge(other.temperature, otherLatest);
+            spo2.merge(other.spo2, otherLatest);
+            return this;
+        }
+
+        private VitalsRollupPointDto toDto() {
+            return VitalsRollupPointDto.builder()
+                    .bucketStart(EpochTimeConverter.toLocalDateTime(start))
+                    .sampleCount(sampleCount)
+                    .heartrateMin(heartrate.minAsInteger())
+                    .heartrateMax(heartrate.maxAsInteger())
+                    .heartrateMean(heartrate.mean())
+                    .heartrateLast(heartrate.lastAsInteger())
+                    .temperatureMin(temperature.minValue())
+                    .temperatureMax(temperature.maxValue())
+                    .temperatureMean(temperature.mean())
+                    .temperatureLast(temperature.last)
+                    .spo2Min(spo2.minAsInteger())
+                    .spo2Max(spo2.maxAsInteger())
+                    .spo2Mean(spo2.mean())
+                    .spo2Last(spo2.lastAsInteger())
+                    .build();
+        }
+    }
+
+    private static final class Metric {
+        private long count;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum;
+        private Double last;
+
+        private void add(Number value, boolean latest) {
+            if (value == null) {
+                return;
+            }
+            double v = value.doubleValue();
+            count++;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            sum += v;
+            if (latest || last == null) {
+                last = v;
+            }
+        }
+
+        private void merge(Metric other, boolean otherLatest) {
+            if (other.count == 0) {
+                return;
+            }
+            count += other.count;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            sum += other.sum;
+            if (otherLatest || last == null) {
+                last = other.last != null ? other.last : last;
+            }
+        }
+
+        private void bind(PreparedStatement ps, int index, int sqlType) throws SQLException {
+            ps.setLong(index, count);
+            ps.setObject(index + 1, count > 0 ? convert(min, sqlType) : null, sqlType);
+            ps.setObject(index + 2, count > 0 ? convert(max, sqlType) : null, sqlType);
+            ps.setDouble(index + 3, sum);
+            ps.setObject(index + 4, last != null ? convert(last, sqlType) : null, sqlType);
+        }
+
+        private void read(ResultSet rs, String prefix) throws SQLException {
+            count = rs.getLong(prefix + "_count");
+            sum = rs.getDouble(prefix + "_sum");
+            if (count > 0) {
+                min = rs.getDouble(prefix + "_min");
+                max = rs.getDouble(prefix + "_max");
+            }
+            double lastValue = rs.getDouble(prefix + "_last");
+            last = rs.wasNull() ? null : lastValue;
+        }
+
+        private static Object convert(double value, int sqlType) {
+            return sqlType == Types.INTEGER ? (Object) (int) Math.round(value) : (Object) value;
+        }
+
+        private Double minValue() {
+            return count > 0 ? min : null;
+        }
+
+        private Double maxValue() {
+            return count > 0 ? max : null;
+        }
+
+        private Double mean() {
+            return count > 0 ? sum / count : null;
+        }
+
+        private Integer minAsInteger() {
+            return count > 0 ? (int) Math.round(min) : null;
+        }
+
+        private Integer maxAsInteger() {
+            return count > 0 ? (int) Math.round(max) : null;
+        }
+
+        private Integer lastAsInteger() {
+            return last != null ? (int) Math.round(last) : null;
+        }
+    }
+
+    private record ClosedBucket(Long patientId, RollupResolution resolution, Bucket bucket) {
+    }
+
+    private record BucketKey(Long patientId, RollupResolution resolution, long start) {
+    }
+}
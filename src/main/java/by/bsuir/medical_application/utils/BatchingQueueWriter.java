@@ -0,0 +1,181 @@
+package by.bsuir.medical_application.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Буферизующий писатель: принимает элементы в ограниченную очередь без блокировки вызывающего потока
+ * и в фоновом потоке передаёт их пачками в flusher. Пачка отправляется, когда набран batchSize
+ * элементов или истекла maxLatencyMillis с момента поступления первого элемента пачки.
+ * При переполнении очереди новые элементы отбрасываются и учитываются в статистике.
+ */
+@Slf4j
+public class BatchingQueueWriter<T> {
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final long maxLatencyMillis;
+    private final Consumer<List<T>> flusher;
+    private final Thread worker;
+
+    private final AtomicLong accepted = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong batches = new AtomicLong(0);
+    private final AtomicLong lastFlushMillis = new AtomicLong(0);
+
+    private volatile boolean running = true;
+
+    public BatchingQueueWriter(String name,
+                               int capacity,
+                               int batchSize,
+                               long maxLatencyMillis,
+                               Consumer<List<T>> flusher) {
+        if (capacity <= 0 || batchSize <= 0 || maxLatencyMillis <= 0) {
+            throw new IllegalArgumentException("Capacity, batch size and latency of " + name + " must be positive");
+        }
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.flusher = flusher;
+        this.worker = new Thread(this::run, name + "-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Добавляет элемент в очередь, никогда не блокируя вызывающий поток
+     * @return false если очередь переполнена и элемент отброшен
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            return false;
+        }
+        if (running && queue.offer(item)) {
+            accepted.incrementAndGet();
+            return true;
+        }
+        long droppedCount = dropped.incrementAndGet();
+        if (droppedCount == 1 || droppedCount % 1000 == 0) {
+            log.warn("{} queue is full ({} items), {} items dropped so far", name, queue.size(), droppedCount);
+        }
+        return false;
+    }
+
+    /**
+     * Добавляет несколько элементов подряд, чтобы они по возможности попали в одну пачку
+     * @return количество принятых элементов
+     */
+    public int offerAll(Collection<? extends T> items) {
+        int acceptedCount = 0;
+        for (T item : items) {
+            if (offer(item)) {
+                acceptedCount++;
+            }
+        }
+        return acceptedCount;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueRemainingCapacity", queue.remainingCapacity());
+        stats.put("accepted", accepted.get());
+        stats.put("dropped", dropped.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        stats.put("lastFlushMillis", lastFlushMillis.get());
+        stats.put("batchSize", batchSize);
+        stats.put("maxLatencyMillis", maxLatencyMillis);
+        return stats;
+    }
+
+    /**
+     * Останавливает приём новых элементов и дописывает всё, что осталось в очереди
+     */
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<T> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            flush(remaining.subList(from, Math.min(remaining.size(), from + batchSize)));
+        }
+        log.info("{} writer stopped: written={}, dropped={}, failed={}", name, written.get(), dropped.get(), failed.get());
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                T first = queue.poll(maxLatencyMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0) {
+                        break;
+                    }
+                    T next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            flusher.accept(batch);
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            log.error("{} failed to flush batch of {} items: {}", name, batch.size(), e.getMessage(), e);
+        } finally {
+            batches.incrementAndGet();
+            lastFlushMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package by.bsuir.medical_application.utils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Перевод локального времени сервера (LocalDateTime показателей) в миллисекунды эпохи и обратно для хранилищ
+ * показателей (буфер последних отсчётов, чанки, агрегаты). Формат времени в кадрах клиентам — в {@link VitalsFrameCodec}.
+ * Правила часового пояса берутся один раз при загрузке класса, а для зоны с постоянным смещением
+ * (UTC в контейнерах) перевод обходится без ZonedDateTime и Instant и не выделяет память.
+ * Результат совпадает с {@code timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()},
+ * в том числе для времени, попадающего в переход на летнее время.
+ */
+public final class EpochTimeConverter {
+
+    private static final ZoneRules ZONE_RULES = ZoneId.systemDefault().getRules();
+    private static final ZoneOffset FIXED_OFFSET = ZONE_RULES.isFixedOffset() ? ZONE_RULES.getOffset(Instant.EPOCH) : null;
+
+    private EpochTimeConverter() {
+    }
+
+    /**
+     * @param timestamp локальное время сервера; null означает текущий момент
+     * @return миллисекунды эпохи
+     */
+    public static long toEpochMillis(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return System.currentTimeMillis();
+        }
+        ZoneOffset offset = FIXED_OFFSET != null ? FIXED_OFFSET : ZONE_RULES.getOffset(timestamp);
+        return timestamp.toEpochSecond(offset) * 1000 + timestamp.getNano() / 1_000_000;
+    }
+
+    /**
+     * Обратный перевод для чтения из хранилищ
+     * @param epochMillis миллисекунды эпохи
+     * @return локальное время сервера
+     */
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000L);
+        int nanos = Math.floorMod(epochMillis, 1000) * 1_000_000;
+        ZoneOffset offset = FIXED_OFFSET != null ? FIXED_OFFSET : ZONE_RULES.getOffset(Instant.ofEpochSecond(epochSecond));
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, offset);
+    }
+}
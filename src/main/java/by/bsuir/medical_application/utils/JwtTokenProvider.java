@@ -71,6 +71,21 @@ public class JwtTokenProvider {
         }
     }
 
+    public Long getUserIdFromToken(String token) {
+        try {
+            Claims claims = Jwts.parser()
+                    .verifyWith(signingKey)
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+            Number userId = claims.get("userId", Number.class);
+            return userId != null ? userId.longValue() : null;
+        } catch (Exception e) {
+            log.warn("Failed to extract user id from token: {}", e.getMessage());
+            throw new RuntimeException("Invalid JWT token", e);
+        }
+    }
+
     public boolean validateToken(String token) {
         try {
             Jwts.parser()
@@ -0,0 +1,43 @@
+package by.bsuir.medical_application.utils;
+
+import by.bsuir.medical_application.dto.NotificationDto;
+import by.bsuir.medical_application.exceptions.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Позиция в ленте уведомлений: пара (created_at, notification_id) последнего просмотренного элемента.
+ * Клиенту передаётся в виде непрозрачной строки base64url, чтобы формат можно было менять без смены API.
+ */
+public record NotificationCursor(Instant createdAt, Long id) {
+
+    public static NotificationCursor of(NotificationDto notification) {
+        return new NotificationCursor(notification.getCreatedAt(), notification.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Разбирает курсор, полученный от клиента
+     * @throws InvalidCursorException если строка не является курсором ленты
+     */
+    public static NotificationCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            String[] parts = raw.split(":");
+            if (parts.length != 3) {
+                throw new InvalidCursorException("Invalid notification cursor");
+            }
+            Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new NotificationCursor(createdAt, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new InvalidCursorException("Invalid notification cursor");
+        }
+    }
+}
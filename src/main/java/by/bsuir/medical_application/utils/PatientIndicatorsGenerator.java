@@ -76,55 +76,35 @@ public class PatientIndicatorsGenerator {
                 .build();
     }
 
-    public static String getCategory(Indicators indicators) {
-        double temperature = indicators.getTemperature();
-        int heartrate = indicators.getHeartrate();
-        int spo2 = indicators.getSpo2();
-        
-        boolean temperatureNormal = temperature >= 35.0 && temperature <= 37.0;
-        
-        boolean heartrateNormal = heartrate >= 60 && heartrate <= 100;
-        
-        boolean spo2Normal = spo2 >= 96 && spo2 <= 100;
-        
-        if (temperatureNormal && heartrateNormal && spo2Normal) {
-            return "Normal";
-        }
-        
-        return "Warning";
-    }
-    
+    /**
+     * Формирует предупреждение для врача по показателям, вышедшим из нормы (см. {@link VitalsClassifier})
+     * @return текст предупреждения или null, если все показатели в норме
+     */
     public static String getWarningMessage(Indicators indicators) {
-        if ("Normal".equals(getCategory(indicators))) {
+        if (VitalsClassifier.monitoringCategory(indicators.getHeartrate(), indicators.getTemperature(), indicators.getSpo2()).isNormal()) {
             return null;
         }
         
         StringBuilder warning = new StringBuilder();
-        double temperature = indicators.getTemperature();
-        int heartrate = indicators.getHeartrate();
-        int spo2 = indicators.getSpo2();
-        
-        if (temperature < 35.0) {
-            warning.append("Низкая температура: ").append(temperature).append("°C (норма: 35.0-37.0°C). ");
-        } else if (temperature > 37.0) {
-            warning.append("Высокая температура: ").append(temperature).append("°C (норма: 35.0-37.0°C). ");
+        Double temperature = indicators.getTemperature();
+        Integer heartrate = indicators.getHeartrate();
+        Integer spo2 = indicators.getSpo2();
+        
+        if (temperature != null && !VitalsClassifier.temperatureCategory(VitalsClassifier.toTenths(temperature)).isNormal()) {
+            warning.append(temperature < 35.0 ? "Низкая температура: " : "Высокая температура: ")
+                    .append(temperature).append("°C (норма: 35.0-37.0°C). ");
         }
         
-        if (heartrate < 60) {
-            warning.append("Низкий пульс: ").append(heartrate).append(" уд/мин (норма: 60-100 уд/мин). ");
-        } else if (heartrate > 100) {
-            warning.append("Высокий пульс: ").append(heartrate).append(" уд/мин (норма: 60-100 уд/мин). ");
+        if (heartrate != null && !VitalsClassifier.heartrateCategory(heartrate).isNormal()) {
+            warning.append(heartrate < 60 ? "Низкий пульс: " : "Высокий пульс: ")
+                    .append(heartrate).append(" уд/мин (норма: 60-100 уд/мин). ");
         }
         
-        if (spo2 < 96) {
+        if (VitalsClassifier.isBelowMonitoringSpo2Norm(spo2)) {
             warning.append("Низкий SpO2: ").append(spo2).append("% (норма: 96-100%). ");
         }
         
         return warning.toString().trim();
     }
-    
-    public static boolean requiresDoctorNotification(Indicators indicators) {
-        return "Warning".equals(getCategory(indicators));
-    }
 
 }
\ No newline at end of file
@@ -0,0 +1,280 @@
+package by.bsuir.medical_application.utils;
+
+import java.util.Arrays;
+
+/**
+ * Сжатый блок (chunk) временного ряда показателей одного пациента в стиле Gorilla.
+ * <p>
+ * Первый отсчёт хранится целиком (64 бита времени, 16 бит пульса, 16 бит температуры в десятых долях,
+ * 8 бит SpO2). Для последующих отсчётов время кодируется как разность разностей (delta-of-delta):
+ * <pre>
+ * '0'                   — D == 0
+ * '10'   + 7 бит        — D в [-63, 64]
+ * '110'  + 9 бит        — D в [-255, 256]
+ * '1110' + 12 бит       — D в [-2047, 2048]
+ * '1111' + 32 бита      — D помещается в int (кроме Integer.MIN_VALUE)
+ * '1111' + 0x80000000 + 64 бита — иначе (разрыв больше ~24 дней или сдвиг времени назад)
+ * </pre>
+ * Значения кодируются как разность с предыдущим значением:
+ * <pre>
+ * '0'                   — значение не изменилось
+ * '10'  + 4 бита zigzag — |delta| не больше 8
+ * '110' + 8 бит zigzag  — |delta| не больше 128
+ * '111' + 16 бит        — новое значение целиком
+ * </pre>
+ * Класс не потокобезопасен: вызывающий код синхронизирует доступ к открытому блоку.
+ */
+public class VitalsChunkEncoder {
+
+    // Значение 32-битной корзины, после которого записана полная 64-битная разность разностей
+    private static final long LONG_DELTA_ESCAPE = Integer.MIN_VALUE & 0xFFFFFFFFL;
+
+    /**
+     * Получатель раскодированных отсчётов, без упаковки значений в объекты
+     */
+    @FunctionalInterface
+    public interface SampleConsumer {
+        void accept(long timestampMillis, int heartrate, int temperatureTenths, int spo2);
+    }
+
+    private final BitWriter writer;
+    private int count;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long minTimestamp;
+    private long maxTimestamp;
+    private long previousDelta;
+    private int previousHeartrate;
+    private int previousTemperature;
+    private int previousSpo2;
+
+    public VitalsChunkEncoder(int expectedSamples) {
+        this.writer = new BitWriter(Math.max(64, expectedSamples * 3));
+    }
+
+    public void append(long timestampMillis, int heartrate, int temperatureTenths, int spo2) {
+        if (count == 0) {
+            writer.writeBits(timestampMillis, 64);
+            writer.writeBits(heartrate, 16);
+            writer.writeBits(temperatureTenths, 16);
+            writer.writeBits(spo2, 8);
+            firstTimestamp = timestampMillis;
+            minTimestamp = timestampMillis;
+            maxTimestamp = timestampMillis;
+        } else {
+            long delta = timestampMillis - lastTimestamp;
+            writeDeltaOfDelta(delta - previousDelta);
+            previousDelta = delta;
+            writeValue(heartrate, previousHeartrate);
+            writeValue(temperatureTenths, previousTemperature);
+            writeValue(spo2, previousSpo2);
+            minTimestamp = Math.min(minTimestamp, timestampMillis);
+            maxTimestamp = Math.max(maxTimestamp, timestampMillis);
+        }
+        lastTimestamp = timestampMillis;
+        previousHeartrate = heartrate;
+        previousTemperature = temperatureTenths;
+        previousSpo2 = spo2;
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public int getSizeBytes() {
+        return writer.sizeBytes();
+    }
+
+    public byte[] toBytes() {
+        return writer.toBytes();
+    }
+
+    /**
+     * Раскодирует блок, последовательно передавая отсчёты получателю
+     * @param payload сжатые данные блока
+     * @param count количество отсчётов в блоке
+     * @param consumer получатель отсчётов
+     */
+    public static void decode(byte[] payload, int count, SampleConsumer consumer) {
+        if (count <= 0) {
+            return;
+        }
+        BitReader reader = new BitReader(payload);
+        long timestamp = reader.readBits(64);
+        int heartrate = (int) reader.readBits(16);
+        int temperature = (int) reader.readBits(16);
+        int spo2 = (int) reader.readBits(8);
+        consumer.accept(timestamp, heartrate, temperature, spo2);
+
+        long delta = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(reader);
+            timestamp += delta;
+            heartrate = readValue(reader, heartrate);
+            temperature = readValue(reader, temperature);
+            spo2 = readValue(reader, spo2);
+            consumer.accept(timestamp, heartrate, temperature, spo2);
+        }
+    }
+
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writer.writeBit(false);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            writer.writeBits(0b10, 2);
+            writer.writeBits(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            writer.writeBits(0b110, 3);
+            writer.writeBits(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            writer.writeBits(0b1110, 4);
+            writer.writeBits(deltaOfDelta + 2047, 12);
+        } else if (deltaOfDelta > Integer.MIN_VALUE && deltaOfDelta <= Integer.MAX_VALUE) {
+            writer.writeBits(0b1111, 4);
+            writer.writeBits(deltaOfDelta, 32);
+        } else {
+            writer.writeBits(0b1111, 4);
+            writer.writeBits(LONG_DELTA_ESCAPE, 32);
+            writer.writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader reader) {
+        if (!reader.readBit()) {
+            return 0;
+        }
+        if (!reader.readBit()) {
+            return reader.readBits(7) - 63;
+        }
+        if (!reader.readBit()) {
+            return reader.readBits(9) - 255;
+        }
+        if (!reader.readBit()) {
+            return reader.readBits(12) - 2047;
+        }
+        long value = reader.readBits(32);
+        if (value == LONG_DELTA_ESCAPE) {
+            return reader.readBits(64);
+        }
+        return (int) value;
+    }
+
+    private void writeValue(int value, int previous) {
+        int delta = value - previous;
+        if (delta == 0) {
+            writer.writeBit(false);
+        } else if (delta >= -8 && delta <= 7) {
+            writer.writeBits(0b10, 2);
+            writer.writeBits(zigzag(delta), 4);
+        } else if (delta >= -128 && delta <= 127) {
+            writer.writeBits(0b110, 3);
+            writer.writeBits(zigzag(delta), 8);
+        } else {
+            writer.writeBits(0b111, 3);
+            writer.writeBits(value, 16);
+        }
+    }
+
+    private static int readValue(BitReader reader, int previous) {
+        if (!reader.readBit()) {
+            return previous;
+        }
+        if (!reader.readBit()) {
+            return previous + unzigzag((int) reader.readBits(4));
+        }
+        if (!reader.readBit()) {
+            return previous + unzigzag((int) reader.readBits(8));
+        }
+        return (int) reader.readBits(16);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class BitWriter {
+        private byte[] buffer;
+        private long bitPosition;
+
+        private BitWriter(int initialBytes) {
+            this.buffer = new byte[initialBytes];
+        }
+
+        private void writeBit(boolean bit) {
+            ensureCapacity(1);
+            if (bit) {
+                buffer[(int) (bitPosition >>> 3)] |= (byte) (0x80 >>> (bitPosition & 7));
+            }
+            bitPosition++;
+        }
+
+        private void writeBits(long value, int bits) {
+            ensureCapacity(bits);
+            for (int i = bits - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    buffer[(int) (bitPosition >>> 3)] |= (byte) (0x80 >>> (bitPosition & 7));
+                }
+                bitPosition++;
+            }
+        }
+
+        private void ensureCapacity(int bits) {
+            long requiredBytes = (bitPosition + bits + 7) >>> 3;
+            if (requiredBytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.max(requiredBytes, buffer.length * 2L));
+            }
+        }
+
+        private int sizeBytes() {
+            return (int) ((bitPosition + 7) >>> 3);
+        }
+
+        private byte[] toBytes() {
+            return Arrays.copyOf(buffer, sizeBytes());
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buffer;
+        private long bitPosition;
+
+        private BitReader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private boolean readBit() {
+            boolean bit = (buffer[(int) (bitPosition >>> 3)] & (0x80 >>> (bitPosition & 7))) != 0;
+            bitPosition++;
+            return bit;
+        }
+
+        private long readBits(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                value = (value << 1) | (readBit() ? 1 : 0);
+            }
+            return value;
+        }
+    }
+}
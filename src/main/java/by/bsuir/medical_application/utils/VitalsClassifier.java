@@ -0,0 +1,246 @@
+package by.bsuir.medical_application.utils;
+
+import by.bsuir.medical_application.model.VitalsCategory;
+
+/**
+ * Единый классификатор показателей пациента.
+ * <p>
+ * Пороги заданы один раз и развёрнуты в таблицы по целочисленным диапазонам: пульс (уд/мин),
+ * температура в десятых долях °C и SpO2 (%). Классификация сводится к трём обращениям к массивам
+ * и не создаёт объектов; строки описания собираются только для отклонений от нормы.
+ * Цель таблиц — одни пороги для всех путей; скорость относительно прежних правил замером не подтверждалась.
+ * <pre>
+ * Пульс:       0 или &gt; 250 — несовместимо с жизнью; &lt; 50 или &gt; 120 — критично;
+ *              50-59 и 101-120 — требует внимания
+ * Температура: &lt; 28.0 или &gt; 41.5 — несовместимо с жизнью; &lt; 35.0 или &gt;= 38.1 — критично;
+ *              37.1-38.0 — требует внимания
+ * SpO2:        &lt; 70 — несовместимо с жизнью; &lt;= 90 — критично; 91-94 — требует внимания
+ * </pre>
+ * Подписи отдельных показателей совпадают с прежними ответами /analyze. Оповещения мониторинга
+ * по-прежнему считают SpO2 95% отклонением (см. {@link #monitoringCategory}).
+ */
+public final class VitalsClassifier {
+
+    private static final VitalsCategory[] CATEGORIES = VitalsCategory.values();
+
+    private static final int MAX_HEARTRATE = 300;
+    private static final int MAX_TEMPERATURE_TENTHS = 600;
+    private static final int MAX_SPO2 = 100;
+    private static final int MONITORING_SPO2_NORM = 96;
+
+    private static final String[] HEARTRATE_STATUS_LABELS = {
+            "Normal", "Incompatible with Life", "Critical - Bradycardia", "Requires Attention - Low",
+            "Requires Attention - Elevated", "Critical - Tachycardia", "Critical - Severe Tachycardia"
+    };
+    private static final VitalsCategory[] HEARTRATE_STATUS_CATEGORIES = {
+            VitalsCategory.NORMAL, VitalsCategory.INCOMPATIBLE_WITH_LIFE, VitalsCategory.CRITICAL,
+            VitalsCategory.REQUIRES_ATTENTION, VitalsCategory.REQUIRES_ATTENTION, VitalsCategory.CRITICAL,
+            VitalsCategory.CRITICAL
+    };
+    // "Critical - Low" (35.0-36.0 °C) — прежняя подпись /analyze; категория при этом остаётся нормальной
+    private static final String[] TEMPERATURE_STATUS_LABELS = {
+            "Normal", "Incompatible with Life", "Critical - Hypothermia", "Requires Attention - Elevated",
+            "Critical - Hyperthermia", "Critical - Severe Hyperthermia", "Critical - Low"
+    };
+    private static final VitalsCategory[] TEMPERATURE_STATUS_CATEGORIES = {
+            VitalsCategory.NORMAL, VitalsCategory.INCOMPATIBLE_WITH_LIFE, VitalsCategory.CRITICAL,
+            VitalsCategory.REQUIRES_ATTENTION, VitalsCategory.CRITICAL, VitalsCategory.CRITICAL,
+            VitalsCategory.NORMAL
+    };
+    private static final String[] SPO2_STATUS_LABELS = {
+            "Normal", "Incompatible with Life", "Critical - Severe hypoxia", "Requires Attention - Low"
+    };
+    private static final VitalsCategory[] SPO2_STATUS_CATEGORIES = {
+            VitalsCategory.NORMAL, VitalsCategory.INCOMPATIBLE_WITH_LIFE, VitalsCategory.CRITICAL,
+            VitalsCategory.REQUIRES_ATTENTION
+    };
+
+    private static final String[] HEARTRATE_DESCRIPTIONS = {
+            null, "Elevated heart rate (", "Critical heart rate (", "Incompatible heart rate ("
+    };
+    private static final String[] TEMPERATURE_DESCRIPTIONS = {
+            null, "Elevated temperature (", "Critical temperature (", "Incompatible temperature ("
+    };
+    private static final String[] SPO2_DESCRIPTIONS = {
+            null, "Low SpO2 (", "Critical SpO2 (", "Incompatible SpO2 ("
+    };
+    private static final String[] CATEGORY_PREFIXES = {
+            null, "REQUIRES ATTENTION - ", "CRITICAL - ", "INCOMPATIBLE WITH LIFE - "
+    };
+
+    private static final byte[] HEARTRATE_TABLE = new byte[MAX_HEARTRATE + 1];
+    private static final byte[] TEMPERATURE_TABLE = new byte[MAX_TEMPERATURE_TENTHS + 1];
+    private static final byte[] SPO2_TABLE = new byte[MAX_SPO2 + 1];
+
+    static {
+        for (int heartrate = 0; heartrate <= MAX_HEARTRATE; heartrate++) {
+            byte status;
+            if (heartrate == 0 || heartrate > 250) {
+                status = 1;
+            } else if (heartrate < 50) {
+                status = 2;
+            } else if (heartrate < 60) {
+                status = 3;
+            } else if (heartrate <= 100) {
+                status = 0;
+            } else if (heartrate <= 120) {
+                status = 4;
+            } else if (heartrate <= 130) {
+                status = 5;
+            } else {
+                status = 6;
+            }
+            HEARTRATE_TABLE[heartrate] = status;
+        }
+        for (int tenths = 0; tenths <= MAX_TEMPERATURE_TENTHS; tenths++) {
+            byte status;
+            if (tenths < 280 || tenths > 415) {
+                status = 1;
+            } else if (tenths < 350) {
+                status = 2;
+            } else if (tenths < 361) {
+                status = 6;
+            } else if (tenths <= 370) {
+                status = 0;
+            } else if (tenths <= 380) {
+                status = 3;
+            } else if (tenths <= 381) {
+                status = 4;
+            } else {
+                status = 5;
+            }
+            TEMPERATURE_TABLE[tenths] = status;
+        }
+        for (int spo2 = 0; spo2 <= MAX_SPO2; spo2++) {
+            byte status;
+            if (spo2 < 70) {
+                status = 1;
+            } else if (spo2 <= 90) {
+                status = 2;
+            } else if (spo2 <= 94) {
+                status = 3;
+            } else {
+                status = 0;
+            }
+            SPO2_TABLE[spo2] = status;
+        }
+    }
+
+    private VitalsClassifier() {
+    }
+
+    /**
+     * Определяет общую категорию показателей как самую серьёзную из категорий отдельных показателей
+     * @return категория; отсутствующие показатели не влияют на результат
+     */
+    public static VitalsCategory classify(Integer heartrate, Double temperature, Integer spo2) {
+        int worst = 0;
+        if (heartrate != null) {
+            worst = Math.max(worst, heartrateCategory(heartrate).ordinal());
+        }
+        if (temperature != null) {
+            worst = Math.max(worst, temperatureCategory(toTenths(temperature)).ordinal());
+        }
+        if (spo2 != null) {
+            worst = Math.max(worst, spo2Category(spo2).ordinal());
+        }
+        return CATEGORIES[worst];
+    }
+
+    /**
+     * Категория для оповещений мониторинга: как {@link #classify}, но SpO2 ниже 96% (норма монитора 96-100%)
+     * требует внимания даже при нормальной общей категории
+     */
+    public static VitalsCategory monitoringCategory(Integer heartrate, Double temperature, Integer spo2) {
+        VitalsCategory category = classify(heartrate, temperature, spo2);
+        if (category.isNormal() && isBelowMonitoringSpo2Norm(spo2)) {
+            return VitalsCategory.REQUIRES_ATTENTION;
+        }
+        return category;
+    }
+
+    public static boolean isBelowMonitoringSpo2Norm(Integer spo2) {
+        return spo2 != null && spo2 < MONITORING_SPO2_NORM;
+    }
+
+    public static VitalsCategory heartrateCategory(int heartrate) {
+        return HEARTRATE_STATUS_CATEGORIES[heartrateStatusCode(heartrate)];
+    }
+
+    public static VitalsCategory temperatureCategory(int temperatureTenths) {
+        return TEMPERATURE_STATUS_CATEGORIES[temperatureStatusCode(temperatureTenths)];
+    }
+
+    public static VitalsCategory spo2Category(int spo2) {
+        return SPO2_STATUS_CATEGORIES[spo2StatusCode(spo2)];
+    }
+
+    public static String heartrateStatus(Integer heartrate) {
+        return heartrate != null ? HEARTRATE_STATUS_LABELS[heartrateStatusCode(heartrate)] : "No data";
+    }
+
+    public static String temperatureStatus(Double temperature) {
+        return temperature != null ? TEMPERATURE_STATUS_LABELS[temperatureStatusCode(toTenths(temperature))] : "No data";
+    }
+
+    public static String spo2Status(Integer spo2) {
+        return spo2 != null ? SPO2_STATUS_LABELS[spo2StatusCode(spo2)] : "No data";
+    }
+
+    /**
+     * Формирует описание отклонений, например "CRITICAL - Critical SpO2 (88%)."
+     * @return описание или "Normal", если отклонений нет
+     */
+    public static String describe(Integer heartrate, Double temperature, Integer spo2) {
+        VitalsCategory category = classify(heartrate, temperature, spo2);
+        if (category.isNormal()) {
+            return VitalsCategory.NORMAL.getLabel();
+        }
+
+        StringBuilder status = new StringBuilder(CATEGORY_PREFIXES[category.ordinal()]);
+        if (heartrate != null) {
+            String description = HEARTRATE_DESCRIPTIONS[heartrateCategory(heartrate).ordinal()];
+            if (description != null) {
+                status.append(description).append(heartrate).append(" bpm). ");
+            }
+        }
+        if (temperature != null) {
+            String description = TEMPERATURE_DESCRIPTIONS[temperatureCategory(toTenths(temperature)).ordinal()];
+            if (description != null) {
+                status.append(description).append(temperature).append("°C). ");
+            }
+        }
+        if (spo2 != null) {
+            String description = SPO2_DESCRIPTIONS[spo2Category(spo2).ordinal()];
+            if (description != null) {
+                status.append(description).append(spo2).append("%). ");
+            }
+        }
+        return status.toString().trim();
+    }
+
+    public static int toTenths(double temperature) {
+        return (int) Math.round(temperature * 10);
+    }
+
+    private static int heartrateStatusCode(int heartrate) {
+        if (heartrate < 0 || heartrate > MAX_HEARTRATE) {
+            return 1;
+        }
+        return HEARTRATE_TABLE[heartrate];
+    }
+
+    private static int temperatureStatusCode(int temperatureTenths) {
+        if (temperatureTenths < 0 || temperatureTenths > MAX_TEMPERATURE_TENTHS) {
+            return 1;
+        }
+        return TEMPERATURE_TABLE[temperatureTenths];
+    }
+
+    private static int spo2StatusCode(int spo2) {
+        if (spo2 < 0) {
+            return 1;
+        }
+        return SPO2_TABLE[Math.min(spo2, MAX_SPO2)];
+    }
+}
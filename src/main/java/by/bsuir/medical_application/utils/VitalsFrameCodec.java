@@ -0,0 +1,91 @@
+package by.bsuir.medical_application.utils;
+
+import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Компактный бинарный формат кадра показателей пациента (версия 2):
+ * <pre>
+ * u8      версия формата (2)
+ * varint  patientId (беззнаковый LEB128)
+ * i64     timestamp: локальное время сервера в миллисекундах, как если бы оно было UTC (big-endian)
+ * u16     пульс, уд/мин (0xFFFF — нет данных)
+ * u16     температура в десятых долях °C (0xFFFF — нет данных)
+ * u8      SpO2, % (0xFF — нет данных)
+ * </pre>
+ * Время передаётся без часового пояса, как и LocalDateTime в JSON-кадрах, чтобы клиент восстановил
+ * ту же ISO-строку, что получают подписчики JSON-топика.
+ * Для передачи через SockJS кадр кодируется в Base64. Декодер на клиенте — realtime-monitoring.js.
+ */
+public final class VitalsFrameCodec {
+
+    public static final byte VERSION = 2;
+    public static final String CONTENT_TYPE = "application/vnd.medical-vitals.v2+base64";
+
+    private static final int MAX_FRAME_SIZE = 1 + 10 + 8 + 2 + 2 + 1;
+    private static final int NO_VALUE_16 = 0xFFFF;
+    private static final int NO_VALUE_8 = 0xFF;
+
+    private VitalsFrameCodec() {
+    }
+
+    public static byte[] encode(MedicalIndicatorsDto indicators) {
+        byte[] buffer = new byte[MAX_FRAME_SIZE];
+        int position = 0;
+        buffer[position++] = VERSION;
+        position = writeVarLong(buffer, position, indicators.getPatientId() != null ? indicators.getPatientId() : 0L);
+        position = writeLong(buffer, position, toWallClockMillis(indicators.getTimestamp()));
+        position = writeShort(buffer, position, indicators.getHeartrate() != null
+                ? clamp(indicators.getHeartrate(), NO_VALUE_16 - 1) : NO_VALUE_16);
+        position = writeShort(buffer, position, indicators.getTemperature() != null
+                ? clamp(Math.round(indicators.getTemperature() * 10), NO_VALUE_16 - 1) : NO_VALUE_16);
+        position = writeByte(buffer, position, indicators.getSpo2() != null
+                ? clamp(indicators.getSpo2(), NO_VALUE_8 - 1) : NO_VALUE_8);
+
+        byte[] frame = new byte[position];
+        System.arraycopy(buffer, 0, frame, 0, position);
+        return frame;
+    }
+
+    public static byte[] encodeBase64(MedicalIndicatorsDto indicators) {
+        return Base64.getEncoder().encode(encode(indicators));
+    }
+
+    private static long toWallClockMillis(LocalDateTime timestamp) {
+        return (timestamp != null ? timestamp : LocalDateTime.now()).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static int clamp(long value, int max) {
+        return (int) Math.max(0, Math.min(max, value));
+    }
+
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int writeLong(byte[] buffer, int position, long value) {
+        for (int i = 7; i >= 0; i--) {
+            buffer[position++] = (byte) (value >>> (i * 8));
+        }
+        return position;
+    }
+
+    private static int writeByte(byte[] buffer, int position, int value) {
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int writeShort(byte[] buffer, int position, int value) {
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
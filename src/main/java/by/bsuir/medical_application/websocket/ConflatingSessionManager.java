@@ -0,0 +1,84 @@
+package by.bsuir.medical_application.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Оборачивает WebSocket-сессии в {@link ConflatingWebSocketSession} и хранит их для метрик отставания.
+ * Конфлируются только направления показателей; тревоги и персональные очереди доставляются без потерь.
+ */
+@Component
+@Slf4j
+public class ConflatingSessionManager implements WebSocketHandlerDecoratorFactory {
+
+    private static final List<String> CONFLATED_PREFIXES = List.of(
+            VitalsPublisher.VITALS_TOPIC_PREFIX,
+            VitalsPublisher.BINARY_VITALS_TOPIC_PREFIX,
+            WardVitalsAggregator.WARD_TOPIC_PREFIX,
+            WardVitalsAggregator.WATCH_DESTINATION_PREFIX
+    );
+
+    private final boolean enabled;
+    private final int maxPendingFrames;
+    private final Map<String, ConflatingWebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    public ConflatingSessionManager(@Value("${monitoring.websocket.conflation.enabled:true}") boolean enabled,
+                                    @Value("${monitoring.websocket.conflation.max-pending-frames:1000}") int maxPendingFrames) {
+        if (maxPendingFrames <= 0) {
+            throw new IllegalArgumentException("Max pending WebSocket frames must be positive");
+        }
+        this.enabled = enabled;
+        this.maxPendingFrames = maxPendingFrames;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                ConflatingWebSocketSession conflatingSession =
+                        new ConflatingWebSocketSession(session, CONFLATED_PREFIXES, maxPendingFrames);
+                sessions.put(session.getId(), conflatingSession);
+                super.afterConnectionEstablished(conflatingSession);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                ConflatingWebSocketSession conflatingSession = sessions.remove(session.getId());
+                super.afterConnectionClosed(conflatingSession != null ? conflatingSession : session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Метрики сессий, самые отстающие первыми
+     */
+    public List<Map<String, Object>> getSessionStats() {
+        return sessions.values().stream()
+                .map(ConflatingWebSocketSession::getStats)
+                .sorted(Comparator.comparingLong((Map<String, Object> stats) -> (Long) stats.get("lagMillis")).reversed())
+                .toList();
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "enabled", enabled,
+                "sessions", sessions.size(),
+                "maxPendingFrames", maxPendingFrames
+        );
+    }
+}
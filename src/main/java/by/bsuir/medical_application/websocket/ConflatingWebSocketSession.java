@@ -0,0 +1,221 @@
+package by.bsuir.medical_application.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сессия с конфляцией исходящих кадров показателей.
+ * <p>
+ * Отправка только ставит кадр в очередь сессии, а отдельный виртуальный поток передаёт кадры клиенту.
+ * Если клиент не успевает, то для каждой пары (подписка, направление показателей) в очереди остаётся только
+ * самый новый кадр на месте предыдущего, а вытесненные учитываются как отброшенные. Остальные кадры
+ * (тревоги, уведомления, служебные кадры STOMP) никогда не отбрасываются; если их накапливается больше
+ * maxPendingFrames, сессия закрывается, чтобы клиент переподключился.
+ * <p>
+ * Вытесняющий кадр встаёт в конец очереди, поэтому более новый кадр показателей не обгоняет тревоги,
+ * поставленные после вытесненного. При закрытии сессии (например, после STOMP ERROR) неотбрасываемые кадры
+ * дописываются клиенту в пределах двух секунд; при закрытии из-за переполнения очереди
+ * клиент заведомо не успевает, и кадры не дописываются.
+ */
+@Slf4j
+public class ConflatingWebSocketSession extends WebSocketSessionDecorator {
+
+    private static final String MESSAGE_FRAME_PREFIX = "MESSAGE\n";
+    private static final String DESTINATION_HEADER = "\ndestination:";
+    private static final String SUBSCRIPTION_HEADER = "\nsubscription:";
+    private static final long CLOSE_FLUSH_MILLIS = 2000;
+
+    private final List<String> conflatedPrefixes;
+    private final int maxPendingFrames;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<Object, PendingFrame> pending = new LinkedHashMap<>();
+    private long sequence;
+    private boolean draining;
+    private boolean closed;
+
+    private long sent;
+    private long conflated;
+    private long lastLagNanos;
+    private long maxLagNanos;
+
+    public ConflatingWebSocketSession(WebSocketSession delegate, List<String> conflatedPrefixes, int maxPendingFrames) {
+        super(delegate);
+        this.conflatedPrefixes = conflatedPrefixes;
+        this.maxPendingFrames = maxPendingFrames;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        String key = conflationKey(message);
+        long now = System.nanoTime();
+        boolean startDrain = false;
+        boolean overflow = false;
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("WebSocket session " + getId() + " is closed");
+            }
+            PendingFrame previous = key != null ? pending.get(key) : null;
+            if (previous != null) {
+                // Новый кадр встаёт в конец очереди и наследует время постановки вытесненного
+                pending.remove(key);
+                pending.put(key, new PendingFrame(message, previous.enqueuedNanos()));
+                conflated++;
+            } else {
+                pending.put(key != null ? key : sequence++, new PendingFrame(message, now));
+                overflow = pending.size() > maxPendingFrames;
+            }
+            if (!draining && !overflow) {
+                draining = true;
+                startDrain = true;
+            }
+        }
+        if (overflow) {
+            log.warn("WebSocket session {} has more than {} pending frames, closing", getId(), maxPendingFrames);
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        }
+        if (startDrain) {
+            Thread.ofVirtual().name("ws-drain-" + getId()).start(this::drain);
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_FLUSH_MILLIS);
+        List<WebSocketMessage<?>> undelivered = new ArrayList<>();
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            boolean flush = !CloseStatus.SESSION_NOT_RELIABLE.equals(status);
+            // Поток отправки завершается после текущего кадра; ждём его, чтобы не писать в сессию параллельно
+            long remaining;
+            while (flush && draining && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (flush && !draining) {
+                pending.forEach((key, frame) -> {
+                    if (!(key instanceof String)) {
+                        undelivered.add(frame.message());
+                    }
+                });
+            }
+            pending.clear();
+        }
+        for (WebSocketMessage<?> message : undelivered) {
+            if (System.nanoTime() >= deadline || !getDelegate().isOpen()) {
+                log.debug("WebSocket session {} closed before {} pending frames were flushed", getId(), undelivered.size());
+                break;
+            }
+            try {
+                getDelegate().sendMessage(message);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to flush frame to closing WebSocket session {}: {}", getId(), e.getMessage());
+                break;
+            }
+        }
+        super.close(status);
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (lock) {
+            long oldestNanos = pending.isEmpty() ? 0 : System.nanoTime() - pending.values().iterator().next().enqueuedNanos();
+            return Map.of(
+                    "sessionId", getId(),
+                    "user", getPrincipal() != null ? getPrincipal().getName() : "anonymous",
+                    "pendingFrames", pending.size(),
+                    "sentFrames", sent,
+                    "conflatedFrames", conflated,
+                    "lagMillis", TimeUnit.NANOSECONDS.toMillis(oldestNanos),
+                    "lastLagMillis", TimeUnit.NANOSECONDS.toMillis(lastLagNanos),
+                    "maxLagMillis", TimeUnit.NANOSECONDS.toMillis(maxLagNanos)
+            );
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            PendingFrame frame;
+            synchronized (lock) {
+                Iterator<PendingFrame> iterator = pending.values().iterator();
+                if (closed || !iterator.hasNext()) {
+                    draining = false;
+                    lock.notifyAll();
+                    return;
+                }
+                frame = iterator.next();
+                iterator.remove();
+            }
+            try {
+                getDelegate().sendMessage(frame.message());
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to send frame to WebSocket session {}: {}", getId(), e.getMessage());
+                synchronized (lock) {
+                    pending.clear();
+                    draining = false;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            long lag = System.nanoTime() - frame.enqueuedNanos();
+            synchronized (lock) {
+                sent++;
+                lastLagNanos = lag;
+                maxLagNanos = Math.max(maxLagNanos, lag);
+            }
+        }
+    }
+
+    /**
+     * Ключ конфляции кадра MESSAGE: подписка и направление, если направление относится к показателям
+     * @return ключ или null, если кадр нельзя отбрасывать
+     */
+    private String conflationKey(WebSocketMessage<?> message) {
+        if (!(message instanceof TextMessage textMessage)) {
+            return null;
+        }
+        String payload = textMessage.getPayload();
+        if (!payload.startsWith(MESSAGE_FRAME_PREFIX)) {
+            return null;
+        }
+        int headersEnd = payload.indexOf("\n\n");
+        String headers = headersEnd >= 0 ? payload.substring(0, headersEnd) : payload;
+        String destination = headerValue(headers, DESTINATION_HEADER);
+        if (destination == null || conflatedPrefixes.stream().noneMatch(destination::startsWith)) {
+            return null;
+        }
+        return headerValue(headers, SUBSCRIPTION_HEADER) + "|" + destination;
+    }
+
+    private static String headerValue(String headers, String header) {
+        int start = headers.indexOf(header);
+        if (start < 0) {
+            return null;
+        }
+        start += header.length();
+        int end = headers.indexOf('\n', start);
+        return end >= 0 ? headers.substring(start, end) : headers.substring(start);
+    }
+
+    private record PendingFrame(WebSocketMessage<?> message, long enqueuedNanos) {
+    }
+}
@@ -0,0 +1,85 @@
+package by.bsuir.medical_application.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Готовит JSON-кадры для брокера из заранее сериализованных байтов, чтобы одно и то же значение
+ * сериализовалось один раз, сколько бы направлений и подписчиков его ни получили.
+ * Сериализация идёт через {@link ObjectMapper#writeValueAsBytes}, который использует пул буферов Jackson.
+ * Экономится только повторная сериализация; STOMP-кадрирование для каждой сессии по-прежнему выполняет Spring,
+ * а величина выигрыша по выделению памяти замером не подтверждалась.
+ */
+@Component
+public class JsonFrameFactory {
+
+    private final ObjectMapper objectMapper;
+
+    public JsonFrameFactory(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public byte[] serialize(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    public <T> T deserialize(byte[] json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to deserialize " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Собирает объект из сериализованного заголовка и массива уже сериализованных элементов
+     * @param header объект без поля arrayField, например {"departmentId":1}
+     * @param arrayField имя поля массива
+     * @param elements JSON элементов массива
+     */
+    public byte[] serializeWithArray(Object header, String arrayField, List<byte[]> elements) {
+        byte[] headerJson = serialize(header);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(headerJson.length + arrayField.length() + 8
+                + elements.stream().mapToInt(element -> element.length + 1).sum());
+        // Заголовок без закрывающей скобки: {"a":1 или {
+        out.write(headerJson, 0, headerJson.length - 1);
+        if (headerJson.length > 2) {
+            out.write(',');
+        }
+        out.writeBytes(("\"" + arrayField + "\":[").getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < elements.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(elements.get(i));
+        }
+        out.write(']');
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    /**
+     * Оборачивает готовые байты в сообщение; заголовки создаются на каждую отправку, а payload общий
+     */
+    public Message<byte[]> message(byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+}
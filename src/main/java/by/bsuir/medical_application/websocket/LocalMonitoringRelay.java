@@ -0,0 +1,46 @@
+package by.bsuir.medical_application.websocket;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Ретранслятор для единственного узла: все подписчики подключены к локальному брокеру,
+ * поэтому передавать кадры некуда
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.relay.type", havingValue = "local", matchIfMissing = true)
+public class LocalMonitoringRelay implements MonitoringRelay {
+
+    @Override
+    public void publishVitals(Long patientId, byte[] json) {
+    }
+
+    @Override
+    public void publishFrame(String destination, byte[] json) {
+    }
+
+    @Override
+    public void publishDemand(Long patientId) {
+    }
+
+    @Override
+    public void publishNotification(String userName, byte[] json) {
+    }
+
+    @Override
+    public void addListener(Consumer<RelayMessage> listener) {
+    }
+
+    @Override
+    public boolean isDistributed() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        return Map.of("type", "local");
+    }
+}
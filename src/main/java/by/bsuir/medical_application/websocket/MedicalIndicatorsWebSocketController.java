@@ -1,128 +1,156 @@
 package by.bsuir.medical_application.websocket;
 
+import by.bsuir.medical_application.dto.MedicalAlertDto;
 import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import by.bsuir.medical_application.dto.WardWatchRequestDto;
 import by.bsuir.medical_application.model.Indicators;
-import by.bsuir.medical_application.model.User;
-import by.bsuir.medical_application.repository.UserRepository;
+import by.bsuir.medical_application.model.VitalsCategory;
+import by.bsuir.medical_application.model.AlertTransition;
+import by.bsuir.medical_application.service.AlertStateTracker;
+import by.bsuir.medical_application.service.CareTeamDirectory;
+import by.bsuir.medical_application.service.IndicatorsIngestService;
+import by.bsuir.medical_application.service.LatestIndicatorsCache;
+import by.bsuir.medical_application.service.MonitoringOwnershipService;
 import by.bsuir.medical_application.service.NotificationService;
+import by.bsuir.medical_application.service.PatientMonitoringScheduler;
 import by.bsuir.medical_application.utils.PatientIndicatorsGenerator;
+import by.bsuir.medical_application.utils.VitalsClassifier;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Controller
 @Slf4j
 public class MedicalIndicatorsWebSocketController {
 
-    private final SimpMessagingTemplate messagingTemplate;
-    private final ScheduledExecutorService globalScheduler;
+    private final PatientMonitoringScheduler monitoringScheduler;
+    private final IndicatorsIngestService indicatorsIngestService;
+    private final LatestIndicatorsCache latestIndicatorsCache;
+    private final AlertStateTracker alertStateTracker;
+    private final VitalsPublisher vitalsPublisher;
     private final NotificationService notificationService;
-    private final UserRepository userRepository;
-    
-    private final Map<Long, Indicators> lastIndicators = new ConcurrentHashMap<>();
-    private final Map<Long, Boolean> activeMonitoring = new ConcurrentHashMap<>();
-    private final Map<Long, ScheduledFuture<?>> monitoringTasks = new ConcurrentHashMap<>();
-    private final Map<Long, ScheduledExecutorService> patientExecutors = new ConcurrentHashMap<>();
-    
-    private final AtomicInteger threadCounter = new AtomicInteger(0);
+    private final CareTeamDirectory careTeamDirectory;
+    private final WardVitalsAggregator wardVitalsAggregator;
+    private final JsonFrameFactory jsonFrameFactory;
+    private final VitalsSubscriptionRegistry subscriptionRegistry;
+    private final MonitoringOwnershipService monitoringOwnership;
+    private final Object monitoringLock = new Object();
 
-    public MedicalIndicatorsWebSocketController(SimpMessagingTemplate messagingTemplate,
+    public MedicalIndicatorsWebSocketController(PatientMonitoringScheduler monitoringScheduler,
+                                                IndicatorsIngestService indicatorsIngestService,
+                                                LatestIndicatorsCache latestIndicatorsCache,
+                                                AlertStateTracker alertStateTracker,
+                                                VitalsPublisher vitalsPublisher,
                                                 NotificationService notificationService,
-                                                UserRepository userRepository) {
-        this.messagingTemplate = messagingTemplate;
+                                                CareTeamDirectory careTeamDirectory,
+                                                WardVitalsAggregator wardVitalsAggregator,
+                                                JsonFrameFactory jsonFrameFactory,
+                                                VitalsSubscriptionRegistry subscriptionRegistry,
+                                                MonitoringOwnershipService monitoringOwnership) {
+        this.monitoringScheduler = monitoringScheduler;
+        this.indicatorsIngestService = indicatorsIngestService;
+        this.latestIndicatorsCache = latestIndicatorsCache;
+        this.alertStateTracker = alertStateTracker;
+        this.vitalsPublisher = vitalsPublisher;
         this.notificationService = notificationService;
-        this.userRepository = userRepository;
-        this.globalScheduler = Executors.newScheduledThreadPool(10);
+        this.careTeamDirectory = careTeamDirectory;
+        this.wardVitalsAggregator = wardVitalsAggregator;
+        this.jsonFrameFactory = jsonFrameFactory;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.monitoringOwnership = monitoringOwnership;
+        subscriptionRegistry.addDestinationListener(this::onVitalsDestinationChanged);
+        wardVitalsAggregator.addInterestListener(this::reconcileMonitoring);
+        monitoringOwnership.bind(this::startLocalMonitoring, this::stopMonitoringInternal);
     }
 
     
+    /**
+     * Мониторинг управляется подписками на топики показателей пациента; сообщение оставлено для старых
+     * клиентов и только сверяет состояние с подписками, не перезапуская поток данных для других зрителей
+     */
     @MessageMapping("/start-monitoring")
     @SendTo("/topic/medical-indicators")
     public void startMonitoring(Long patientId) {
-        log.info("Starting real-time monitoring for patient: {}", patientId);
-        
-        stopMonitoringInternal(patientId);
-        
-        ScheduledExecutorService patientExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread thread = new Thread(r, "monitoring-patient-" + patientId + "-" + threadCounter.incrementAndGet());
-            thread.setDaemon(true);
-            return thread;
-        });
-        
-        activeMonitoring.put(patientId, true);
-        patientExecutors.put(patientId, patientExecutor);
-        
-        ScheduledFuture<?> task = patientExecutor.scheduleAtFixedRate(() -> {
-            try {
-                if (activeMonitoring.getOrDefault(patientId, false)) {
-                    generateAndSendIndicators(patientId);
-                } else {
-                    ScheduledFuture<?> currentTask = monitoringTasks.get(patientId);
-                    if (currentTask != null && !currentTask.isCancelled()) {
-                        currentTask.cancel(false);
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error in monitoring task for patient {}: {}", patientId, e.getMessage(), e);
-                stopMonitoringInternal(patientId);
-            }
-        }, 0, 1, TimeUnit.SECONDS);
-        
-        monitoringTasks.put(patientId, task);
-        
-        log.info("Monitoring task created for patient {} with executor: {}", patientId, patientExecutor);
+        log.info("Start monitoring requested for patient: {}", patientId);
+        reconcileMonitoring(patientId);
     }
 
     
     @MessageMapping("/stop-monitoring")
     public void stopMonitoring(Long patientId) {
-        log.info("Stopping real-time monitoring for patient: {}", patientId);
-        stopMonitoringInternal(patientId);
+        log.info("Stop monitoring requested for patient: {}", patientId);
+        reconcileMonitoring(patientId);
     }
     
-    private void stopMonitoringInternal(Long patientId) {
-        log.info("Stopping monitoring internally for patient: {}", patientId);
-        
-        activeMonitoring.put(patientId, false);
-        
-        ScheduledFuture<?> task = monitoringTasks.remove(patientId);
-        if (task != null && !task.isCancelled()) {
-            task.cancel(true);
-            log.info("Cancelled monitoring task for patient: {}", patientId);
+    /**
+     * Изменяет набор пациентов, показатели которых приходят одним кадром в персональную очередь
+     * сессии /user/queue/ward-watch/{watchId}
+     */
+    @MessageMapping("/ward-watch")
+    public void updateWardWatch(WardWatchRequestDto request, @Header("simpSessionId") String sessionId) {
+        wardVitalsAggregator.updateWatch(sessionId, request);
+    }
+    
+    private void onVitalsDestinationChanged(String destination) {
+        Long patientId = parsePatientId(destination, VitalsPublisher.VITALS_TOPIC_PREFIX);
+        if (patientId == null) {
+            patientId = parsePatientId(destination, VitalsPublisher.BINARY_VITALS_TOPIC_PREFIX);
         }
-        
-        ScheduledExecutorService patientExecutor = patientExecutors.remove(patientId);
-        if (patientExecutor != null) {
-            try {
-                patientExecutor.shutdown();
-                if (!patientExecutor.awaitTermination(2, TimeUnit.SECONDS)) {
-                    log.warn("Patient executor for {} did not terminate gracefully, forcing shutdown", patientId);
-                    patientExecutor.shutdownNow();
-                    if (!patientExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
-                        log.error("Patient executor for {} did not terminate after forced shutdown", patientId);
-                    }
-                } else {
-                    log.info("Patient executor for {} terminated gracefully", patientId);
-                }
-            } catch (InterruptedException e) {
-                log.warn("Interrupted while waiting for patient executor termination for {}", patientId);
-                patientExecutor.shutdownNow();
-                Thread.currentThread().interrupt();
+        if (patientId != null) {
+            reconcileMonitoring(patientId);
+        }
+    }
+
+    /**
+     * Один общий генератор на пациента работает, пока на его JSON- или бинарный топик подписан хотя бы
+     * один клиент либо пациент наблюдается через палату отделения или набор поста (см. {@link WardVitalsAggregator});
+     * появление первого зрителя запускает его, уход последнего (отписка или разрыв) — останавливает.
+     * В кластере узел только сообщает о своих зрителях, а генератор запускает узел-владелец пациента
+     * (см. {@link MonitoringOwnershipService})
+     */
+    private void reconcileMonitoring(Long patientId) {
+        synchronized (monitoringLock) {
+            boolean hasViewers = subscriptionRegistry.hasSubscribers(VitalsPublisher.VITALS_TOPIC_PREFIX + patientId)
+                    || subscriptionRegistry.hasSubscribers(VitalsPublisher.BINARY_VITALS_TOPIC_PREFIX + patientId)
+                    || wardVitalsAggregator.isObserved(patientId);
+            if (monitoringOwnership.isEnabled()) {
+                monitoringOwnership.updateLocalDemand(patientId, hasViewers);
+            } else if (hasViewers) {
+                startLocalMonitoring(patientId);
+            } else if (monitoringScheduler.isMonitored(patientId)) {
+                stopMonitoringInternal(patientId);
             }
         }
-        
-        lastIndicators.remove(patientId);
+    }
+
+    private void startLocalMonitoring(Long patientId) {
+        if (monitoringScheduler.start(patientId, () -> generateAndSendIndicators(patientId))) {
+            log.info("Monitoring started for patient {} on this node", patientId);
+        }
+    }
+
+    private static Long parsePatientId(String destination, String prefix) {
+        if (!destination.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(destination.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private void stopMonitoringInternal(Long patientId) {
+        if (monitoringScheduler.stop(patientId)) {
+            log.info("Cancelled monitoring task for patient: {}", patientId);
+        }
+        alertStateTracker.reset(patientId);
         
         log.info("Monitoring completely stopped for patient: {}", patientId);
     }
@@ -130,16 +158,20 @@ public class MedicalIndicatorsWebSocketController {
     
     private void generateAndSendIndicators(Long patientId) {
         try {
+            // Аренда могла истечь между пересмотрами, например при недоступной базе
+            if (!monitoringOwnership.holdsLease(patientId)) {
+                return;
+            }
             
-            Indicators previousIndicators = lastIndicators.get(patientId);
+            // Продолжаем ряд от последних известных показателей, чтобы значения менялись плавно
+            Indicators previousIndicators = latestIndicatorsCache.peek(patientId)
+                    .map(this::toIndicators)
+                    .orElse(null);
             
             
             Indicators newIndicators = PatientIndicatorsGenerator.createStableIndicators(previousIndicators);
             newIndicators.setPatientId(patientId);
             
-            
-            lastIndicators.put(patientId, newIndicators);
-            
            
             MedicalIndicatorsDto indicatorsDto = MedicalIndicatorsDto.builder()
                     .heartrate(newIndicators.getHeartrate())
@@ -150,7 +182,7 @@ public class MedicalIndicatorsWebSocketController {
                     .build();
             
             
-            messagingTemplate.convertAndSend("/topic/medical-indicators/" + patientId, indicatorsDto);
+            indicatorsIngestService.ingestMonitored(indicatorsDto);
             
            
             checkAndSendAlerts(indicatorsDto);
@@ -162,50 +194,68 @@ public class MedicalIndicatorsWebSocketController {
 
     
     private void checkAndSendAlerts(MedicalIndicatorsDto indicators) {
-        Indicators indicatorsObj = Indicators.builder()
-                .temperature(indicators.getTemperature())
-                .heartrate(indicators.getHeartrate())
-                .spo2(indicators.getSpo2())
-                .patientId(indicators.getPatientId())
-                .build();
-        
-        String category = PatientIndicatorsGenerator.getCategory(indicatorsObj);
+        VitalsCategory category = VitalsClassifier.monitoringCategory(
+                indicators.getHeartrate(), indicators.getTemperature(), indicators.getSpo2());
+        AlertTransition transition = alertStateTracker.evaluate(indicators.getPatientId(), category);
         
-        if (!"Normal".equals(category)) {
-            String warningMessage = PatientIndicatorsGenerator.getWarningMessage(indicatorsObj);
+        if (transition.requiresNotification()) {
+            String warningMessage = PatientIndicatorsGenerator.getWarningMessage(toIndicators(indicators));
             
-            Map<String, Object> alert = Map.of(
-                    "type", "MEDICAL_WARNING",
-                    "patientId", indicators.getPatientId(),
-                    "category", category,
-                    "alertLevel", "WARNING",
-                    "message", warningMessage,
-                    "indicators", indicators,
-                    "timestamp", LocalDateTime.now()
-            );
+            MedicalAlertDto alert = MedicalAlertDto.builder()
+                    .type("MEDICAL_WARNING")
+                    .patientId(indicators.getPatientId())
+                    .category(category.getLabel())
+                    .alertLevel(category.getAlertLevel())
+                    .transition(transition)
+                    .message(warningMessage)
+                    .indicators(indicators)
+                    .timestamp(LocalDateTime.now())
+                    .build();
             
             sendAlertToDoctor(indicators.getPatientId(), alert);
-            notificationService.notifyDoctorAboutIndicators(indicators.getPatientId(), category, warningMessage);
+            notificationService.notifyDoctorAboutIndicators(indicators.getPatientId(), category.getLabel(), warningMessage);
+            
+            log.warn("Medical warning ({}) sent to doctor for patient {}: {}",
+                    transition, indicators.getPatientId(), warningMessage);
+        } else if (transition == AlertTransition.CLEARED) {
+            MedicalAlertDto alert = MedicalAlertDto.builder()
+                    .type("MEDICAL_WARNING_CLEARED")
+                    .patientId(indicators.getPatientId())
+                    .category(category.getLabel())
+                    .alertLevel(category.getAlertLevel())
+                    .transition(transition)
+                    .indicators(indicators)
+                    .timestamp(LocalDateTime.now())
+                    .build();
             
-            log.warn("Medical warning sent to doctor for patient {}: {}", indicators.getPatientId(), warningMessage);
+            sendAlertToDoctor(indicators.getPatientId(), alert);
+            log.info("Medical warning cleared for patient {}", indicators.getPatientId());
         }
     }
 
     
-    private void sendAlertToDoctor(Long patientId, Map<String, Object> alert) {
+    private void sendAlertToDoctor(Long patientId, MedicalAlertDto alert) {
         Long doctorId = getAssignedDoctorId(patientId);
         if (doctorId != null) {
-            messagingTemplate.convertAndSend("/topic/doctor-alerts/" + doctorId, alert);
+            vitalsPublisher.publishFrame("/topic/doctor-alerts/" + doctorId, jsonFrameFactory.serialize(alert));
             log.info("Alert sent to doctor {} for patient {}", doctorId, patientId);
         }
     }
 
     
     private Long getAssignedDoctorId(Long patientId) {
-        return userRepository.findById(patientId)
-                .map(User::getAssignedDoctor)
-                .map(User::getUserId)
-                .orElse(null);
+        return careTeamDirectory.getDoctorId(patientId).orElse(null);
+    }
+
+    
+    private Indicators toIndicators(MedicalIndicatorsDto dto) {
+        return Indicators.builder()
+                .patientId(dto.getPatientId())
+                .heartrate(dto.getHeartrate())
+                .temperature(dto.getTemperature())
+                .spo2(dto.getSpo2())
+                .timestamp(dto.getTimestamp())
+                .build();
     }
 
    
@@ -216,8 +266,6 @@ public class MedicalIndicatorsWebSocketController {
         Indicators testIndicators = PatientIndicatorsGenerator.createRandomIndicators(false); // Нормальные показатели
         testIndicators.setPatientId(patientId);
         
-        lastIndicators.put(patientId, testIndicators);
-        
         MedicalIndicatorsDto indicatorsDto = MedicalIndicatorsDto.builder()
                 .heartrate(testIndicators.getHeartrate())
                 .temperature(testIndicators.getTemperature())
@@ -226,7 +274,8 @@ public class MedicalIndicatorsWebSocketController {
                 .patientId(testIndicators.getPatientId())
                 .build();
         
-        messagingTemplate.convertAndSend("/topic/medical-indicators/" + patientId, indicatorsDto);
+        latestIndicatorsCache.update(indicatorsDto);
+        vitalsPublisher.publish(indicatorsDto);
         
         log.info("Test indicators sent for patient {}: Temp={}°C, HR={} bpm, SpO2={}%", 
                 patientId, testIndicators.getTemperature(), testIndicators.getHeartrate(), testIndicators.getSpo2());
@@ -240,63 +289,21 @@ public class MedicalIndicatorsWebSocketController {
     public void shutdown() {
         log.info("Shutting down WebSocket controller");
         
-        for (Long patientId : monitoringTasks.keySet()) {
+        for (Long patientId : monitoringScheduler.getMonitoredPatientIds()) {
             stopMonitoringInternal(patientId);
         }
         
-        for (Map.Entry<Long, ScheduledExecutorService> entry : patientExecutors.entrySet()) {
-            Long patientId = entry.getKey();
-            ScheduledExecutorService executor = entry.getValue();
-            try {
-                executor.shutdown();
-                if (!executor.awaitTermination(2, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                    log.warn("Forced shutdown of executor for patient: {}", patientId);
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-        }
-        
-        globalScheduler.shutdown();
-        try {
-            if (!globalScheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                globalScheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            globalScheduler.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-        
         log.info("WebSocket controller shutdown completed");
     }
     
     public Map<String, Object> getThreadInfo() {
-        Map<String, Object> info = new ConcurrentHashMap<>();
-        
-        info.put("activeMonitoringCount", activeMonitoring.size());
-        info.put("activeMonitoringPatients", new ConcurrentHashMap<Long, Boolean>(activeMonitoring));
-        
-        info.put("monitoringTasksCount", monitoringTasks.size());
-        info.put("monitoringTasksPatients", new ConcurrentHashMap<Long, Object>(monitoringTasks.keySet().stream().collect(java.util.stream.Collectors.toMap(k -> k, k -> "task"))));
+        Map<String, Object> info = new ConcurrentHashMap<>(monitoringScheduler.getStats());
         
-        info.put("patientExecutorsCount", patientExecutors.size());
-        info.put("patientExecutorsPatients", new ConcurrentHashMap<Long, Object>(patientExecutors.keySet().stream().collect(java.util.stream.Collectors.toMap(k -> k, k -> "executor"))));
-        
-        info.put("globalSchedulerShutdown", globalScheduler.isShutdown());
-        info.put("globalSchedulerTerminated", globalScheduler.isTerminated());
-        
-        Thread[] allThreads = new Thread[Thread.activeCount()];
-        Thread.enumerate(allThreads);
-        int monitoringThreads = 0;
-        for (Thread thread : allThreads) {
-            if (thread != null && thread.getName().contains("monitoring-patient")) {
-                monitoringThreads++;
-            }
-        }
-        info.put("activeMonitoringThreads", monitoringThreads);
+        info.put("activeMonitoringCount", monitoringScheduler.getMonitoredCount());
+        info.put("activeMonitoringPatients", monitoringScheduler.getMonitoredPatientIds());
         info.put("totalActiveThreads", Thread.activeCount());
+        info.put("alerts", alertStateTracker.getStats());
+        info.put("ward", wardVitalsAggregator.getStats());
         
         return info;
     }
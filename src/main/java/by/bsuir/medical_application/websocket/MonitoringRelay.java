@@ -0,0 +1,35 @@
+package by.bsuir.medical_application.websocket;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Передача кадров мониторинга между экземплярами приложения. У каждого узла свой брокер STOMP,
+ * поэтому показатели, сгенерированные узлом-владельцем пациента, ретранслируются остальным узлам,
+ * а те рассылают их своим подписчикам.
+ * <p>
+ * Реализация выбирается свойством cluster.relay.type: local (один узел, ретрансляция не нужна)
+ * или postgres (PostgreSQL LISTEN/NOTIFY).
+ */
+public interface MonitoringRelay {
+
+    void publishVitals(Long patientId, byte[] json);
+
+    void publishFrame(String destination, byte[] json);
+
+    void publishDemand(Long patientId);
+
+    void publishNotification(String userName, byte[] json);
+
+    /**
+     * Регистрирует обработчик сообщений других узлов; собственные сообщения узла ему не передаются
+     */
+    void addListener(Consumer<RelayMessage> listener);
+
+    /**
+     * @return true, если сообщения действительно доходят до других узлов
+     */
+    boolean isDistributed();
+
+    Map<String, Object> getStats();
+}
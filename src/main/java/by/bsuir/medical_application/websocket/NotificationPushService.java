@@ -0,0 +1,110 @@
+package by.bsuir.medical_application.websocket;
+
+import by.bsuir.medical_application.dto.NotificationDto;
+import by.bsuir.medical_application.dto.NotificationPushDto;
+import by.bsuir.medical_application.service.NotificationsWrittenEvent;
+import by.bsuir.medical_application.service.UnreadCounterService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Отправляет новые уведомления и счётчик непрочитанных в персональную очередь пользователя
+ * /user/queue/notifications. Уведомления рассылаются только пользователям с открытой STOMP-сессией.
+ * В кластере сессия пользователя может быть открыта на другом узле, поэтому уведомление также уходит в
+ * {@link MonitoringRelay} без счётчика; узел, к которому пользователь подключён, досчитывает счётчик и
+ * доставляет кадр через свой брокер. Так счётчик непрочитанных считается только для пользователей,
+ * подключённых хотя бы к одному узлу, а не для каждого получателя пачки.
+ */
+@Component
+@Slf4j
+public class NotificationPushService {
+
+    public static final String NOTIFICATIONS_QUEUE = "/queue/notifications";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final UnreadCounterService unreadCounterService;
+    private final MonitoringRelay monitoringRelay;
+    private final JsonFrameFactory jsonFrameFactory;
+
+    public NotificationPushService(SimpMessagingTemplate messagingTemplate,
+                                   SimpUserRegistry userRegistry,
+                                   UnreadCounterService unreadCounterService,
+                                   MonitoringRelay monitoringRelay,
+                                   JsonFrameFactory jsonFrameFactory) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.unreadCounterService = unreadCounterService;
+        this.monitoringRelay = monitoringRelay;
+        this.jsonFrameFactory = jsonFrameFactory;
+        monitoringRelay.addListener(this::onRelayMessage);
+    }
+
+    /**
+     * Рассылает записанную пачку; счётчики к этому моменту уже учли её в {@link UnreadCounterService}
+     */
+    @EventListener
+    public void onNotificationsWritten(NotificationsWrittenEvent event) {
+        for (NotificationDto notification : event.notifications()) {
+            Long recipientId = notification.getRecipientId();
+            if (recipientId == null) {
+                continue;
+            }
+            if (isOnline(recipientId)) {
+                sendLocally(recipientId.toString(), notification);
+            }
+            if (monitoringRelay.isDistributed()) {
+                monitoringRelay.publishNotification(recipientId.toString(), jsonFrameFactory.serialize(notification));
+            }
+        }
+    }
+
+    /**
+     * Отправляет пользователю актуальный счётчик непрочитанных (например, после отметки о прочтении)
+     */
+    public void pushUnreadCount(Long userId, long unreadCount) {
+        if (userId != null && (monitoringRelay.isDistributed() || isOnline(userId))) {
+            send(userId, null, unreadCount);
+        }
+    }
+
+    public boolean isOnline(Long userId) {
+        return userId != null && userRegistry.getUser(userId.toString()) != null;
+    }
+
+    private void onRelayMessage(RelayMessage message) {
+        if (message.type() != RelayMessage.Type.NOTIFICATION || message.payload() == null
+                || userRegistry.getUser(message.destination()) == null) {
+            return;
+        }
+        NotificationDto notification = jsonFrameFactory.deserialize(
+                message.payload().getBytes(StandardCharsets.UTF_8), NotificationDto.class);
+        sendLocally(message.destination(), notification);
+    }
+
+    private void sendLocally(String userName, NotificationDto notification) {
+        NotificationPushDto payload = NotificationPushDto.builder()
+                .notification(notification)
+                .unreadCount(unreadCounterService.get(notification.getRecipientId()))
+                .build();
+        messagingTemplate.convertAndSendToUser(userName, NOTIFICATIONS_QUEUE, payload);
+    }
+
+    private void send(Long userId, NotificationDto notification, long unreadCount) {
+        NotificationPushDto payload = NotificationPushDto.builder()
+                .notification(notification)
+                .unreadCount(unreadCount)
+                .build();
+        if (isOnline(userId)) {
+            messagingTemplate.convertAndSendToUser(userId.toString(), NOTIFICATIONS_QUEUE, payload);
+        }
+        if (monitoringRelay.isDistributed()) {
+            monitoringRelay.publishFrame("/user/" + userId + NOTIFICATIONS_QUEUE, jsonFrameFactory.serialize(payload));
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package by.bsuir.medical_application.websocket;
+
+import by.bsuir.medical_application.service.ClusterMembership;
+import by.bsuir.medical_application.utils.BatchingQueueWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Ретранслятор кадров мониторинга через PostgreSQL LISTEN/NOTIFY.
+ * <p>
+ * Исходящие сообщения копятся в {@link BatchingQueueWriter} и отправляются пачкой одним запросом
+ * pg_notify по массиву. Входящие читает отдельный поток, который держит одно соединение пула с LISTEN
+ * и переподключается при его потере. NOTIFY не хранит сообщения: пока соединение восстанавливается,
+ * кадры показателей теряются, а набор наблюдаемых пациентов догоняется периодическим пересмотром аренд.
+ * Сообщение длиннее предела NOTIFY (8000 байт) не ретранслируется и учитывается в статистике.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.relay.type", havingValue = "postgres")
+@Slf4j
+public class PostgresMonitoringRelay implements MonitoringRelay {
+
+    private static final int MAX_PAYLOAD_BYTES = 7999;
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, payload) FROM unnest(?::text[]) AS payload";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+    private final String channel;
+    private final BatchingQueueWriter<String> writer;
+    private final List<Consumer<RelayMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread listenerThread;
+
+    private volatile boolean running = true;
+    private volatile boolean connected;
+
+    private final AtomicLong received = new AtomicLong(0);
+    private final AtomicLong oversized = new AtomicLong(0);
+    private final AtomicLong malformed = new AtomicLong(0);
+    private final AtomicLong reconnects = new AtomicLong(0);
+
+    public PostgresMonitoringRelay(DataSource dataSource,
+                                   JdbcTemplate jdbcTemplate,
+                                   ObjectMapper objectMapper,
+                                   ClusterMembership clusterMembership,
+                                   @Value("${cluster.relay.channel:medical_monitoring}") String channel,
+                                   @Value("${cluster.relay.queue-capacity:20000}") int queueCapacity,
+                                   @Value("${cluster.relay.batch-size:200}") int batchSize,
+                                   @Value("${cluster.relay.max-latency-millis:20}") long maxLatencyMillis) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid monitoring relay channel: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.nodeId = clusterMembership.getNodeId();
+        this.channel = channel;
+        this.writer = new BatchingQueueWriter<>("monitoring-relay", queueCapacity, batchSize, maxLatencyMillis, this::notifyBatch);
+        this.listenerThread = new Thread(this::listen, "monitoring-relay-listener");
+        this.listenerThread.setDaemon(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListening() {
+        listenerThread.start();
+    }
+
+    @Override
+    public void publishVitals(Long patientId, byte[] json) {
+        publish(new RelayMessage(RelayMessage.Type.VITALS, nodeId, patientId, null, new String(json, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void publishFrame(String destination, byte[] json) {
+        publish(new RelayMessage(RelayMessage.Type.FRAME, nodeId, null, destination, new String(json, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void publishDemand(Long patientId) {
+        publish(new RelayMessage(RelayMessage.Type.DEMAND, nodeId, patientId, null, null));
+    }
+
+    @Override
+    public void publishNotification(String userName, byte[] json) {
+        publish(new RelayMessage(RelayMessage.Type.NOTIFICATION, nodeId, null, userName, new String(json, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void addListener(Consumer<RelayMessage> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean isDistributed() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(writer.getStats());
+        stats.put("type", "postgres");
+        stats.put("channel", channel);
+        stats.put("connected", connected);
+        stats.put("received", received.get());
+        stats.put("oversized", oversized.get());
+        stats.put("malformed", malformed.get());
+        stats.put("reconnects", reconnects.get());
+        return stats;
+    }
+
+    private void publish(RelayMessage message) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize relay message", e);
+        }
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            long count = oversized.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                log.warn("Relay message {} for {} exceeds NOTIFY payload limit, {} dropped so far",
+                        message.type(), message.destination() != null ? message.destination() : message.patientId(), count);
+            }
+            return;
+        }
+        writer.offer(payload);
+    }
+
+    private void notifyBatch(List<String> batch) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(NOTIFY_SQL)) {
+                ps.setString(1, channel);
+                ps.setArray(2, connection.createArrayOf("text", batch.toArray()));
+                ps.execute();
+            }
+            return null;
+        });
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                connected = true;
+                log.info("Monitoring relay node {} is listening on channel {}", nodeId, channel);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    reconnects.incrementAndGet();
+                    log.warn("Monitoring relay connection lost, reconnecting: {}", e.getMessage());
+                }
+            } finally {
+                connected = false;
+            }
+            if (running) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        RelayMessage message;
+        try {
+            message = objectMapper.readValue(payload, RelayMessage.class);
+        } catch (JsonProcessingException e) {
+            malformed.incrementAndGet();
+            log.debug("Ignoring malformed relay message: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(message.origin())) {
+            return;
+        }
+        received.incrementAndGet();
+        for (Consumer<RelayMessage> listener : listeners) {
+            try {
+                listener.accept(message);
+            } catch (Exception e) {
+                log.error("Failed to handle relay message {}: {}", message.type(), e.getMessage(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writer.shutdown();
+        try {
+            listenerThread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package by.bsuir.medical_application.websocket;
+
+/**
+ * Сообщение между узлами кластера, передаваемое через {@link MonitoringRelay}
+ * @param type вид сообщения
+ * @param origin ID узла-отправителя; свои сообщения узел не обрабатывает
+ * @param patientId пациент для VITALS и DEMAND
+ * @param destination STOMP-направление для FRAME, имя пользователя-получателя для NOTIFICATION
+ * @param payload JSON кадра для VITALS и FRAME, JSON уведомления для NOTIFICATION
+ */
+public record RelayMessage(Type type, String origin, Long patientId, String destination, String payload) {
+
+    public enum Type {
+        /** Показатели пациента: получатель рассылает их своим подписчикам топиков пациента и палат */
+        VITALS,
+        /** Готовый кадр для одного направления (тревоги врачу) */
+        FRAME,
+        /** Новое уведомление без счётчика: узел, к которому подключён получатель, досчитывает его сам */
+        NOTIFICATION,
+        /** Изменился набор наблюдаемых пациентов узла: владельцам стоит пересмотреть аренды */
+        DEMAND
+    }
+}
@@ -0,0 +1,54 @@
+package by.bsuir.medical_application.websocket;
+
+import by.bsuir.medical_application.utils.JwtTokenProvider;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Аутентифицирует STOMP-сессию по JWT из заголовка Authorization кадра CONNECT.
+ * Сессии без токена остаются анонимными (публичные топики мониторинга), с неверным токеном — отклоняются.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtTokenProvider jwtTokenProvider;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        String authorization = accessor.getFirstNativeHeader(AUTHORIZATION_HEADER);
+        if (!StringUtils.hasText(authorization) || !authorization.startsWith(BEARER_PREFIX)) {
+            return message;
+        }
+
+        String token = authorization.substring(BEARER_PREFIX.length());
+        if (!jwtTokenProvider.validateToken(token)) {
+            throw new MessageDeliveryException("Invalid JWT token in STOMP CONNECT");
+        }
+        Long userId = jwtTokenProvider.getUserIdFromToken(token);
+        if (userId == null) {
+            throw new MessageDeliveryException("JWT token has no userId claim");
+        }
+        accessor.setUser(new StompPrincipal(userId.toString()));
+        log.debug("STOMP session {} authenticated as user {}", accessor.getSessionId(), userId);
+        return message;
+    }
+}
@@ -0,0 +1,14 @@
+package by.bsuir.medical_application.websocket;
+
+import java.security.Principal;
+
+/**
+ * Пользователь STOMP-сессии; имя — ID пользователя, поэтому /user/{userId}/queue/... адресует его сессии
+ */
+public record StompPrincipal(String name) implements Principal {
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,117 @@
+package by.bsuir.medical_application.websocket;
+
+import by.bsuir.medical_application.dto.MedicalIndicatorsDto;
+import by.bsuir.medical_application.service.LatestIndicatorsCache;
+import by.bsuir.medical_application.utils.VitalsFrameCodec;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Рассылает показатели пациентов подписчикам STOMP-топиков:
+ * JSON в /topic/medical-indicators/{patientId} и компактные бинарные кадры
+ * в /topic/medical-indicators-binary/{patientId} (только если на него кто-то подписан).
+ * Для сводных кадров палат показатели передаются в {@link WardVitalsAggregator}.
+ * <p>
+ * В кластере показатели и тревоги дополнительно уходят в {@link MonitoringRelay}, а полученные от других
+ * узлов рассылаются подписчикам локального брокера так же, как собственные. Показатели пациентов, у которых
+ * на узле нет подписчиков, отбрасываются без разбора JSON (и не попадают в кэш последних показателей).
+ */
+@Component
+public class VitalsPublisher {
+
+    public static final String VITALS_TOPIC_PREFIX = "/topic/medical-indicators/";
+    public static final String BINARY_VITALS_TOPIC_PREFIX = "/topic/medical-indicators-binary/";
+
+    private static final MimeType BINARY_FRAME_MIME_TYPE = MimeType.valueOf(VitalsFrameCodec.CONTENT_TYPE);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final VitalsSubscriptionRegistry subscriptionRegistry;
+    private final WardVitalsAggregator wardVitalsAggregator;
+    private final JsonFrameFactory jsonFrameFactory;
+    private final MonitoringRelay monitoringRelay;
+    private final LatestIndicatorsCache latestIndicatorsCache;
+
+    public VitalsPublisher(SimpMessagingTemplate messagingTemplate,
+                           VitalsSubscriptionRegistry subscriptionRegistry,
+                           WardVitalsAggregator wardVitalsAggregator,
+                           JsonFrameFactory jsonFrameFactory,
+                           MonitoringRelay monitoringRelay,
+                           LatestIndicatorsCache latestIndicatorsCache) {
+        this.messagingTemplate = messagingTemplate;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.wardVitalsAggregator = wardVitalsAggregator;
+        this.jsonFrameFactory = jsonFrameFactory;
+        this.monitoringRelay = monitoringRelay;
+        this.latestIndicatorsCache = latestIndicatorsCache;
+        monitoringRelay.addListener(this::onRelayMessage);
+    }
+
+    public void publish(MedicalIndicatorsDto indicators) {
+        if (indicators == null || indicators.getPatientId() == null) {
+            return;
+        }
+        // Показатели сериализуются один раз: те же байты уходят в топик пациента, в сводные кадры палат и другим узлам
+        byte[] json = jsonFrameFactory.serialize(indicators);
+        publishLocally(indicators, json);
+        monitoringRelay.publishVitals(indicators.getPatientId(), json);
+    }
+
+    /**
+     * Отправляет готовый JSON-кадр подписчикам направления на всех узлах
+     */
+    public void publishFrame(String destination, byte[] json) {
+        messagingTemplate.send(destination, jsonFrameFactory.message(json));
+        monitoringRelay.publishFrame(destination, json);
+    }
+
+    private void publishLocally(MedicalIndicatorsDto indicators, byte[] json) {
+        messagingTemplate.send(VITALS_TOPIC_PREFIX + indicators.getPatientId(), jsonFrameFactory.message(json));
+        wardVitalsAggregator.record(indicators.getPatientId(), json);
+
+        String binaryDestination = BINARY_VITALS_TOPIC_PREFIX + indicators.getPatientId();
+        if (subscriptionRegistry.hasSubscribers(binaryDestination)) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(BINARY_FRAME_MIME_TYPE);
+            accessor.setLeaveMutable(true);
+            messagingTemplate.send(binaryDestination,
+                    MessageBuilder.createMessage(VitalsFrameCodec.encodeBase64(indicators), accessor.getMessageHeaders()));
+        }
+    }
+
+    private boolean hasLocalObservers(Long patientId) {
+        return subscriptionRegistry.hasSubscribers(VITALS_TOPIC_PREFIX + patientId)
+                || subscriptionRegistry.hasSubscribers(BINARY_VITALS_TOPIC_PREFIX + patientId)
+                || wardVitalsAggregator.isObserved(patientId);
+    }
+
+    private void onRelayMessage(RelayMessage message) {
+        if (message.payload() == null) {
+            return;
+        }
+        byte[] json = message.payload().getBytes(StandardCharsets.UTF_8);
+        switch (message.type()) {
+            case VITALS -> {
+                // Показатели всех пациентов кластера приходят каждому узлу; разбираются только наблюдаемые здесь
+                if (message.patientId() == null || !hasLocalObservers(message.patientId())) {
+                    return;
+                }
+                MedicalIndicatorsDto indicators = jsonFrameFactory.deserialize(json, MedicalIndicatorsDto.class);
+                if (indicators.getPatientId() != null) {
+                    // Кэш последних показателей нужен для REST-запросов и для плавного продолжения ряда,
+                    // если пациент перейдёт к этому узлу
+                    latestIndicatorsCache.update(indicators);
+                    publishLocally(indicators, json);
+                }
+            }
+            case FRAME -> messagingTemplate.send(message.destination(), jsonFrameFactory.message(json));
+            default -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package by.bsuir.medical_application.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Отслеживает STOMP-подписки клиентов, чтобы рассылать кадры только в те топики, у которых есть подписчики.
+ * Слушатели уведомляются, когда у направления появляется первый подписчик или уходит последний.
+ */
+@Component
+@Slf4j
+public class VitalsSubscriptionRegistry {
+
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> destinationCounts = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> destinationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Регистрирует слушателя смены наличия подписчиков; он должен сам перепроверить {@link #hasSubscribers},
+     * так как уведомления о соседних событиях могут прийти в другом порядке
+     */
+    public void addDestinationListener(Consumer<String> listener) {
+        destinationListeners.add(listener);
+    }
+
+    public boolean hasSubscribers(String destination) {
+        AtomicInteger count = destinationCounts.get(destination);
+        return count != null && count.get() > 0;
+    }
+
+    public int getSubscriberCount(String destination) {
+        AtomicInteger count = destinationCounts.get(destination);
+        return count != null ? count.get() : 0;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        String destination = accessor.getDestination();
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String previous = sessionSubscriptions
+                .computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            decrement(previous);
+        }
+        increment(destination);
+        log.debug("Session {} subscribed to {}", sessionId, destination);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessionSubscriptions.get(accessor.getSessionId());
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            decrement(destination);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions == null) {
+            return;
+        }
+        subscriptions.values().forEach(this::decrement);
+        log.debug("Session {} disconnected, released {} subscriptions", event.getSessionId(), subscriptions.size());
+    }
+
+    private void increment(String destination) {
+        AtomicInteger updated = destinationCounts.compute(destination, (d, count) -> {
+            AtomicInteger current = count != null ? count : new AtomicInteger();
+            current.incrementAndGet();
+            return current;
+        });
+        if (updated.get() == 1) {
+            notifyListeners(destination);
+        }
+    }
+
+    private void decrement(String destination) {
+        AtomicInteger updated = destinationCounts.computeIfPresent(destination,
+                (d, count) -> count.decrementAndGet() <= 0 ? null : count);
+        if (updated == null) {
+            notifyListeners(destination);
+        }
+    }
+
+    private void notifyListeners(String destination) {
+        for (Consumer<String> listener : destinationListeners) {
+            try {
+                listener.accept(destination);
+            } catch (Exception e) {
+                log.error("Subscription listener failed for {}: {}", destination, e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package by.bsuir.medical_application.websocket;
+
+import by.bsuir.medical_application.dto.WardVitalsFrameDto;
+import by.bsuir.medical_application.dto.WardWatchRequestDto;
+import by.bsuir.medical_application.service.CareTeamDirectory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Сводные кадры показателей для постов медсестёр: вместо подписки на каждую койку клиент подписывается
+ * на одно направление и раз в такт получает один кадр со всеми новыми отсчётами.
+ * <ul>
+ *     <li>/topic/ward-vitals/{departmentId} — все пациенты отделения (по {@link CareTeamDirectory});</li>
+ *     <li>/user/queue/ward-watch/{watchId} — произвольный набор пациентов, который клиент меняет сообщениями
+ *     в /app/ward-watch без переподписки. Наборы принадлежат STOMP-сессии и удаляются при её закрытии;
+ *     кадры набора доставляются только в эту сессию, поэтому одинаковые watchId разных постов не пересекаются.</li>
+ * </ul>
+ * Между тактами хранится только последний отсчёт каждого пациента, за которым кто-то наблюдает.
+ * Пока ни у одного отделения нет подписчиков, отделение пациента при записи отсчёта не определяется.
+ * Наблюдение за пациентом через палату или набор считается спросом на его показатели: слушатели
+ * уведомляются, когда пациент попадает под наблюдение или выходит из-под него.
+ */
+@Component
+@Slf4j
+public class WardVitalsAggregator {
+
+    public static final String WARD_TOPIC_PREFIX = "/topic/ward-vitals/";
+    public static final String WATCH_QUEUE_PREFIX = "/queue/ward-watch/";
+    public static final String WATCH_DESTINATION_PREFIX = "/user" + WATCH_QUEUE_PREFIX;
+
+    private static final String WATCH_ID_PATTERN = "[A-Za-z0-9_-]{1,64}";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final VitalsSubscriptionRegistry subscriptionRegistry;
+    private final CareTeamDirectory careTeamDirectory;
+    private final JsonFrameFactory jsonFrameFactory;
+    private final int maxWatchPatients;
+
+    // Последний отсчёт пациента за такт в виде уже сериализованного JSON
+    private final AtomicReference<Map<Long, byte[]>> pending = new AtomicReference<>(new ConcurrentHashMap<>());
+    // sessionId -> watchId -> пациенты
+    private final Map<String, Map<String, Set<Long>>> sessionWatches = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> watchedPatients = new ConcurrentHashMap<>();
+    // Направления отделений, у которых сейчас есть подписчики
+    private final Set<String> wardDestinations = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<Long>> interestListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong framesSent = new AtomicLong(0);
+    private final AtomicLong readingsSent = new AtomicLong(0);
+    private final ScheduledExecutorService flusher;
+
+    public WardVitalsAggregator(SimpMessagingTemplate messagingTemplate,
+                                VitalsSubscriptionRegistry subscriptionRegistry,
+                                CareTeamDirectory careTeamDirectory,
+                                JsonFrameFactory jsonFrameFactory,
+                                @Value("${monitoring.ward.flush-millis:1000}") long flushMillis,
+                                @Value("${monitoring.ward.max-watch-patients:200}") int maxWatchPatients) {
+        if (flushMillis <= 0) {
+            throw new IllegalArgumentException("Ward flush interval must be positive");
+        }
+        this.messagingTemplate = messagingTemplate;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.careTeamDirectory = careTeamDirectory;
+        this.jsonFrameFactory = jsonFrameFactory;
+        this.maxWatchPatients = maxWatchPatients;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ward-vitals-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleAtFixedRate(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        subscriptionRegistry.addDestinationListener(this::onDestinationChanged);
+    }
+
+    /**
+     * Запоминает отсчёт до ближайшего такта, если пациент входит в отслеживаемую палату или набор
+     * @param json показатели, уже сериализованные для топика пациента
+     */
+    public void record(Long patientId, byte[] json) {
+        if (isObserved(patientId)) {
+            pending.get().put(patientId, json);
+        }
+    }
+
+    /**
+     * Пациент входит в набор наблюдения или в отделение, на которое есть подписка.
+     * Проверяется только по памяти, без обращения к базе
+     */
+    public boolean isObserved(Long patientId) {
+        return watchedPatients.containsKey(patientId) || (!wardDestinations.isEmpty() && hasWardSubscribers(patientId));
+    }
+
+    /**
+     * Регистрирует слушателя изменения наблюдения за пациентом; он должен сам перепроверить {@link #isObserved}
+     */
+    public void addInterestListener(Consumer<Long> listener) {
+        interestListeners.add(listener);
+    }
+
+    /**
+     * Изменяет набор пациентов наблюдения сессии
+     * @param sessionId ID STOMP-сессии
+     * @param request watchId (латиница, цифры, '_' и '-', до 64 символов) и списки добавляемых/удаляемых
+     *                пациентов; replace заменяет набор целиком
+     */
+    public void updateWatch(String sessionId, WardWatchRequestDto request) {
+        if (sessionId == null || request == null || request.getWatchId() == null) {
+            return;
+        }
+        if (!request.getWatchId().matches(WATCH_ID_PATTERN)) {
+            log.debug("Ignoring ward watch with invalid id from session {}", sessionId);
+            return;
+        }
+        Map<String, Set<Long>> watches = sessionWatches.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>());
+        Set<Long> watch = watches.computeIfAbsent(request.getWatchId(), id -> ConcurrentHashMap.newKeySet());
+        List<Long> changed = new ArrayList<>();
+        synchronized (watch) {
+            if (request.isReplace()) {
+                watch.forEach(patientId -> unwatch(patientId, changed));
+                watch.clear();
+            }
+            if (request.getRemove() != null) {
+                for (Long patientId : request.getRemove()) {
+                    if (patientId != null && watch.remove(patientId)) {
+                        unwatch(patientId, changed);
+                    }
+                }
+            }
+            if (request.getAdd() != null) {
+                for (Long patientId : request.getAdd()) {
+                    if (watch.size() >= maxWatchPatients) {
+                        log.warn("Ward watch {} of session {} reached {} patients", request.getWatchId(), sessionId, maxWatchPatients);
+                        break;
+                    }
+                    if (patientId != null && watch.add(patientId)
+                            && watchedPatients.computeIfAbsent(patientId, id -> new AtomicInteger()).incrementAndGet() == 1) {
+                        changed.add(patientId);
+                    }
+                }
+            }
+        }
+        notifyInterest(changed);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, Set<Long>> watches = sessionWatches.remove(event.getSessionId());
+        if (watches == null) {
+            return;
+        }
+        List<Long> changed = new ArrayList<>();
+        for (Set<Long> watch : watches.values()) {
+            synchronized (watch) {
+                watch.forEach(patientId -> unwatch(patientId, changed));
+                watch.clear();
+            }
+        }
+        notifyInterest(changed);
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "watchSessions", sessionWatches.size(),
+                "watchedPatients", watchedPatients.size(),
+                "wardDestinations", wardDestinations.size(),
+                "framesSent", framesSent.get(),
+                "readingsSent", readingsSent.get()
+        );
+    }
+
+    private void flush() {
+        try {
+            Map<Long, byte[]> readings = pending.getAndSet(new ConcurrentHashMap<>());
+            if (readings.isEmpty()) {
+                return;
+            }
+            LocalDateTime now = LocalDateTime.now();
+
+            Map<Long, List<byte[]>> byDepartment = new HashMap<>();
+            if (!wardDestinations.isEmpty()) {
+                readings.forEach((patientId, reading) -> {
+                    Long departmentId = departmentOf(patientId);
+                    if (departmentId != null && subscriptionRegistry.hasSubscribers(WARD_TOPIC_PREFIX + departmentId)) {
+                        byDepartment.computeIfAbsent(departmentId, id -> new ArrayList<>()).add(reading);
+                    }
+                });
+            }
+            byDepartment.forEach((departmentId, departmentReadings) -> send(WARD_TOPIC_PREFIX + departmentId,
+                    WardVitalsFrameDto.builder()
+                            .departmentId(departmentId)
+                            .timestamp(now)
+                            .build(),
+                    departmentReadings));
+
+            sessionWatches.forEach((sessionId, watches) -> {
+                watches.forEach((watchId, patientIds) -> {
+                    List<byte[]> watchReadings = new ArrayList<>();
+                    for (Long patientId : patientIds) {
+                        byte[] reading = readings.get(patientId);
+                        if (reading != null) {
+                            watchReadings.add(reading);
+                        }
+                    }
+                    if (!watchReadings.isEmpty()) {
+                        sendToSession(sessionId, WATCH_QUEUE_PREFIX + watchId, WardVitalsFrameDto.builder()
+                                .watchId(watchId)
+                                .timestamp(now)
+                                .build(),
+                                watchReadings);
+                    }
+                });
+            });
+        } catch (Exception e) {
+            log.error("Failed to flush ward vitals: {}", e.getMessage(), e);
+        }
+    }
+
+    private void send(String destination, WardVitalsFrameDto header, List<byte[]> readings) {
+        byte[] frame = jsonFrameFactory.serializeWithArray(header, "readings", readings);
+        messagingTemplate.send(destination, jsonFrameFactory.message(frame));
+        framesSent.incrementAndGet();
+        readingsSent.addAndGet(readings.size());
+    }
+
+    /**
+     * Отправляет кадр в персональную очередь STOMP-сессии (в том числе анонимной): /user/{sessionId}/... с
+     * заголовком simpSessionId разрешается в очередь только этой сессии
+     */
+    private void sendToSession(String sessionId, String destination, WardVitalsFrameDto header, List<byte[]> readings) {
+        byte[] frame = jsonFrameFactory.serializeWithArray(header, "readings", readings);
+        Message<byte[]> message = jsonFrameFactory.message(frame);
+        SimpMessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, SimpMessageHeaderAccessor.class);
+        accessor.setSessionId(sessionId);
+        messagingTemplate.send("/user/" + sessionId + destination, message);
+        framesSent.incrementAndGet();
+        readingsSent.addAndGet(readings.size());
+    }
+
+    private void onDestinationChanged(String destination) {
+        if (!destination.startsWith(WARD_TOPIC_PREFIX)) {
+            return;
+        }
+        if (subscriptionRegistry.hasSubscribers(destination)) {
+            wardDestinations.add(destination);
+        } else {
+            wardDestinations.remove(destination);
+        }
+        Long departmentId;
+        try {
+            departmentId = Long.valueOf(destination.substring(WARD_TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        notifyInterest(careTeamDirectory.getPatientIds(departmentId));
+    }
+
+    private void notifyInterest(List<Long> patientIds) {
+        for (Long patientId : patientIds) {
+            for (Consumer<Long> listener : interestListeners) {
+                try {
+                    listener.accept(patientId);
+                } catch (Exception e) {
+                    log.error("Ward interest listener failed for patient {}: {}", patientId, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private boolean hasWardSubscribers(Long patientId) {
+        Long departmentId = departmentOf(patientId);
+        return departmentId != null && subscriptionRegistry.hasSubscribers(WARD_TOPIC_PREFIX + departmentId);
+    }
+
+    private Long departmentOf(Long patientId) {
+        // Только индекс в памяти: isObserved вызывается под блокировкой мониторинга и на каждом отсчёте
+        return careTeamDirectory.peek(patientId).map(CareTeamDirectory.CareTeam::departmentId).orElse(null);
+    }
+
+    private void unwatch(Long patientId, List<Long> changed) {
+        if (watchedPatients.computeIfPresent(patientId, (id, count) -> count.decrementAndGet() <= 0 ? null : count) == null) {
+            changed.add(patientId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+}
@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS indicators (
+    indicator_id BIGSERIAL PRIMARY KEY,
+    patient_id BIGINT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    heartrate INTEGER,
+    temperature DOUBLE PRECISION,
+    spo2 INTEGER,
+    timestamp TIMESTAMP WITHOUT TIME ZONE
+);
+
+CREATE INDEX IF NOT EXISTS idx_indicators_patient_timestamp
+    ON indicators (patient_id, timestamp DESC);
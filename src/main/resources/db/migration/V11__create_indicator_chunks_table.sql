@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS indicator_chunks (
+    chunk_id BIGSERIAL PRIMARY KEY,
+    patient_id BIGINT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    start_time TIMESTAMPTZ NOT NULL,
+    end_time TIMESTAMPTZ NOT NULL,
+    sample_count INTEGER NOT NULL,
+    payload BYTEA NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_indicator_chunks_patient_time
+    ON indicator_chunks (patient_id, start_time, end_time);
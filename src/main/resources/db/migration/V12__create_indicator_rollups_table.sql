@@ -0,0 +1,23 @@
+CREATE TABLE IF NOT EXISTS indicator_rollups (
+    patient_id BIGINT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    resolution VARCHAR(8) NOT NULL,
+    bucket_start TIMESTAMPTZ NOT NULL,
+    sample_count BIGINT NOT NULL,
+    last_time TIMESTAMPTZ NOT NULL,
+    hr_count BIGINT NOT NULL DEFAULT 0,
+    hr_min INTEGER,
+    hr_max INTEGER,
+    hr_sum DOUBLE PRECISION NOT NULL DEFAULT 0,
+    hr_last INTEGER,
+    temp_count BIGINT NOT NULL DEFAULT 0,
+    temp_min DOUBLE PRECISION,
+    temp_max DOUBLE PRECISION,
+    temp_sum DOUBLE PRECISION NOT NULL DEFAULT 0,
+    temp_last DOUBLE PRECISION,
+    spo2_count BIGINT NOT NULL DEFAULT 0,
+    spo2_min INTEGER,
+    spo2_max INTEGER,
+    spo2_sum DOUBLE PRECISION NOT NULL DEFAULT 0,
+    spo2_last INTEGER,
+    PRIMARY KEY (patient_id, resolution, bucket_start)
+);
@@ -0,0 +1,4 @@
+CREATE INDEX IF NOT EXISTS idx_notifications_recipient_created_at_id
+    ON notifications (recipient_id, created_at DESC, notification_id DESC);
+
+DROP INDEX IF EXISTS idx_notifications_recipient_created_at;
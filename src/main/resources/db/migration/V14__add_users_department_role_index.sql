@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS idx_users_department_role
+    ON users (department_id, role);
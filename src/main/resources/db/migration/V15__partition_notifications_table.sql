@@ -0,0 +1,78 @@
+-- Переводим notifications на помесячное секционирование по created_at.
+-- Старая таблица переименовывается, её строки переносятся в секции, после чего она удаляется.
+ALTER TABLE notifications RENAME TO notifications_legacy;
+ALTER INDEX IF EXISTS idx_notifications_recipient_created_at_id RENAME TO idx_notifications_legacy_feed;
+ALTER INDEX IF EXISTS idx_notifications_unread RENAME TO idx_notifications_legacy_unread;
+ALTER SEQUENCE notifications_notification_id_seq OWNED BY NONE;
+
+CREATE TABLE notifications (
+    notification_id BIGINT NOT NULL DEFAULT nextval('notifications_notification_id_seq'),
+    recipient_id BIGINT NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    message TEXT NOT NULL,
+    type VARCHAR(64) NOT NULL,
+    patient_id BIGINT,
+    patient_name VARCHAR(255),
+    department_id BIGINT,
+    department_name VARCHAR(255),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    is_read BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (notification_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE notifications_notification_id_seq OWNED BY notifications.notification_id;
+
+CREATE INDEX IF NOT EXISTS idx_notifications_recipient_created_at_id
+    ON notifications (recipient_id, created_at DESC, notification_id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_notifications_unread
+    ON notifications (recipient_id)
+    WHERE is_read = FALSE;
+
+-- Секции создаются от месяца самой старой записи до двух месяцев вперёд (или до самой новой записи);
+-- дальнейшие секции заранее создаёт NotificationRetentionService
+DO $$
+DECLARE
+    month_start DATE;
+    last_month DATE;
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(created_at)), date_trunc('month', NOW()))::DATE,
+           GREATEST(COALESCE(date_trunc('month', MAX(created_at)), NOW()),
+                    date_trunc('month', NOW()) + INTERVAL '2 months')::DATE
+    INTO month_start, last_month
+    FROM notifications_legacy;
+
+    WHILE month_start <= last_month LOOP
+        EXECUTE format(
+                'CREATE TABLE IF NOT EXISTS %I PARTITION OF notifications FOR VALUES FROM (%L) TO (%L)',
+                'notifications_' || to_char(month_start, 'YYYY_MM'),
+                month_start,
+                (month_start + INTERVAL '1 month')::DATE);
+        month_start := (month_start + INTERVAL '1 month')::DATE;
+    END LOOP;
+END $$;
+
+INSERT INTO notifications (notification_id, recipient_id, message, type, patient_id, patient_name,
+                           department_id, department_name, created_at, is_read)
+SELECT notification_id, recipient_id, message, type, patient_id, patient_name,
+       department_id, department_name, COALESCE(created_at, NOW()), COALESCE(is_read, FALSE)
+FROM notifications_legacy;
+
+DROP TABLE notifications_legacy;
+
+-- Архив прочитанных уведомлений старше срока хранения; в горячих индексах они больше не участвуют
+CREATE TABLE IF NOT EXISTS notifications_archive (
+    notification_id BIGINT PRIMARY KEY,
+    recipient_id BIGINT NOT NULL,
+    message TEXT NOT NULL,
+    type VARCHAR(64) NOT NULL,
+    patient_id BIGINT,
+    patient_name VARCHAR(255),
+    department_id BIGINT,
+    department_name VARCHAR(255),
+    created_at TIMESTAMPTZ NOT NULL,
+    is_read BOOLEAN NOT NULL,
+    archived_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_notifications_archive_recipient_created_at
+    ON notifications_archive (recipient_id, created_at DESC);
@@ -0,0 +1,26 @@
+-- Узлы кластера: каждый экземпляр приложения периодически обновляет heartbeat_at,
+-- узлы без отметки дольше cluster.node-ttl-millis считаются ушедшими и удаляются
+CREATE TABLE IF NOT EXISTS cluster_nodes (
+    node_id VARCHAR(128) PRIMARY KEY,
+    started_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    heartbeat_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+-- Аренда генерации показателей пациента: пока она не истекла, показатели пациента генерирует только node_id
+CREATE TABLE IF NOT EXISTS monitoring_leases (
+    patient_id BIGINT PRIMARY KEY,
+    node_id VARCHAR(128) NOT NULL,
+    expires_at TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_monitoring_leases_node ON monitoring_leases (node_id);
+
+-- Пациенты, у которых на узле есть подписчики; по этой таблице владелец решает, нужно ли генерировать показатели
+CREATE TABLE IF NOT EXISTS monitoring_demand (
+    node_id VARCHAR(128) NOT NULL,
+    patient_id BIGINT NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (node_id, patient_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_monitoring_demand_patient ON monitoring_demand (patient_id);
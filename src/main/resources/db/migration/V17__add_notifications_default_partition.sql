@@ -0,0 +1,4 @@
+-- Секция по умолчанию принимает уведомления, для месяца которых ещё нет секции (например, если задача
+-- обслуживания долго не запускалась), чтобы вставка не падала. При создании помесячной секции
+-- NotificationRetentionService переносит в неё попавшие сюда строки.
+CREATE TABLE IF NOT EXISTS notifications_default PARTITION OF notifications DEFAULT;
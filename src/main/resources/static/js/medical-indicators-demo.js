@@ -58,6 +58,14 @@ async function analyzeIndicators(indicators) {
 async function getLatestIndicators(patientId) {
     try {
         const response = await fetch(`/api/medical-indicators/patient/${patientId}/latest`);
+        // 404 означает, что показателей пациента ещё нет
+        if (response.status === 404) {
+            console.log('No indicators recorded yet for patient', patientId);
+            return null;
+        }
+        if (!response.ok) {
+            throw new Error('Failed to get latest indicators: HTTP ' + response.status);
+        }
         const indicators = await response.json();
         console.log('Latest indicators:', indicators);
         return indicators;
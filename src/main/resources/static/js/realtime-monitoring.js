@@ -1,11 +1,15 @@
 class RealtimeMedicalMonitoring {
-    constructor(patientId) {
+    constructor(patientId, options = {}) {
         this.patientId = patientId;
+        this.binaryFrames = options.binaryFrames === true;
         this.stompClient = null;
+        this.vitalsSubscription = null;
         this.isConnected = false;
         this.isMonitoring = false;
         this.currentIndicators = null;
         this.alertHistory = [];
+        this.historySeconds = options.historySeconds || 300;
+        this.history = this.emptyHistory();
         
         this.initializeWebSocket();
         this.setupEventListeners();
@@ -15,16 +19,22 @@ class RealtimeMedicalMonitoring {
         const socket = new SockJS('/ws');
         this.stompClient = Stomp.over(socket);
         
-        this.stompClient.connect({}, (frame) => {
+        const accessToken = localStorage.getItem('accessToken');
+        const connectHeaders = accessToken ? { 'Authorization': 'Bearer ' + accessToken } : {};
+        
+        this.stompClient.connect(connectHeaders, (frame) => {
             console.log('Connected to WebSocket: ' + frame);
             this.isConnected = true;
             this.updateConnectionStatus(true);
             this.hideLoadingIndicator();
             
-            this.stompClient.subscribe('/topic/medical-indicators/' + this.patientId, (message) => {
-                const indicators = JSON.parse(message.body);
-                this.handleNewIndicators(indicators);
-            });
+            if (accessToken) {
+                // Новые уведомления и счётчик непрочитанных приходят сразу, без опроса REST
+                this.stompClient.subscribe('/user/queue/notifications', (message) => {
+                    const push = JSON.parse(message.body);
+                    document.dispatchEvent(new CustomEvent('notifications:update', { detail: push }));
+                });
+            }
             
         }, (error) => {
             console.error('WebSocket connection error:', error);
@@ -68,10 +78,23 @@ class RealtimeMedicalMonitoring {
             return;
         }
 
-        this.stompClient.send('/app/start-monitoring', {}, this.patientId);
+        // Сервер запускает мониторинг при первой подписке на показатели пациента и останавливает после последней
+        if (this.binaryFrames) {
+            this.vitalsSubscription = this.stompClient.subscribe('/topic/medical-indicators-binary/' + this.patientId, (message) => {
+                this.handleNewIndicators(decodeVitalsFrame(message.body));
+            });
+        } else {
+            this.vitalsSubscription = this.stompClient.subscribe('/topic/medical-indicators/' + this.patientId, (message) => {
+                const indicators = JSON.parse(message.body);
+                this.handleNewIndicators(indicators);
+            });
+        }
         this.isMonitoring = true;
         this.updateMonitoringStatus(true);
         
+        // Графики заполняются из кольцевого буфера сервера, дальше дополняются кадрами подписки
+        this.loadRecentHistory();
+        
         // Переключаем кнопки
         const getIndicatorsBtn = document.getElementById('getIndicators');
         const stopBtn = document.getElementById('stopMonitoring');
@@ -87,7 +110,10 @@ class RealtimeMedicalMonitoring {
             return;
         }
 
-        this.stompClient.send('/app/stop-monitoring', {}, this.patientId);
+        if (this.vitalsSubscription) {
+            this.vitalsSubscription.unsubscribe();
+            this.vitalsSubscription = null;
+        }
         
         this.isMonitoring = false;
         this.updateMonitoringStatus(false);
@@ -239,8 +265,79 @@ class RealtimeMedicalMonitoring {
         });
     }
 
+    emptyHistory() {
+        return { timestamps: [], heartrate: [], temperature: [], spo2: [] };
+    }
+
+    async loadRecentHistory() {
+        try {
+            const response = await fetch(`/api/medical-indicators/patient/${this.patientId}/recent?seconds=${this.historySeconds}`);
+            // 404 означает, что в буфере ещё нет показателей пациента
+            if (response.status === 404) {
+                return;
+            }
+            if (!response.ok) {
+                throw new Error('HTTP ' + response.status);
+            }
+            const recent = await response.json();
+            // Кадры, пришедшие по подписке во время запроса, новее буфера и остаются в конце
+            const received = this.history;
+            const newest = recent.timestamps.length > 0 ? recent.timestamps[recent.timestamps.length - 1] : 0;
+            let from = received.timestamps.findIndex(t => t > newest);
+            if (from < 0) from = received.timestamps.length;
+            this.history = {
+                timestamps: recent.timestamps.concat(received.timestamps.slice(from)),
+                heartrate: recent.heartrate.concat(received.heartrate.slice(from)),
+                temperature: recent.temperature.concat(received.temperature.slice(from)),
+                spo2: recent.spo2.concat(received.spo2.slice(from))
+            };
+            this.renderCharts();
+        } catch (error) {
+            console.error('Error loading recent indicators:', error);
+        }
+    }
+
     updateChart(indicators) {
-        console.log('Chart update:', indicators);
+        const history = this.history;
+        history.timestamps.push(new Date(indicators.timestamp).getTime());
+        history.heartrate.push(indicators.heartrate);
+        history.temperature.push(indicators.temperature);
+        history.spo2.push(indicators.spo2);
+        
+        const cutoff = Date.now() - this.historySeconds * 1000;
+        let expired = 0;
+        while (expired < history.timestamps.length && history.timestamps[expired] < cutoff) {
+            expired++;
+        }
+        if (expired > 0) {
+            history.timestamps.splice(0, expired);
+            history.heartrate.splice(0, expired);
+            history.temperature.splice(0, expired);
+            history.spo2.splice(0, expired);
+        }
+        
+        this.renderCharts();
+    }
+
+    renderCharts() {
+        this.renderSparkline('heartrate-sparkline', this.history.heartrate);
+        this.renderSparkline('temperature-sparkline', this.history.temperature);
+        this.renderSparkline('spo2-sparkline', this.history.spo2);
+    }
+
+    renderSparkline(id, values) {
+        const element = document.getElementById(id);
+        if (!element || values.length < 2) return;
+        
+        const width = 100;
+        const height = 30;
+        const min = Math.min(...values);
+        const range = (Math.max(...values) - min) || 1;
+        const points = values.map((value, i) =>
+            `${(i * width / (values.length - 1)).toFixed(1)},${(height - (value - min) * height / range).toFixed(1)}`
+        ).join(' ');
+        element.innerHTML = `<svg viewBox="0 0 ${width} ${height}" preserveAspectRatio="none" width="100%" height="100%">`
+            + `<polyline fill="none" stroke="currentColor" stroke-width="1" points="${points}"/></svg>`;
     }
 
     updateElement(id, value) {
@@ -339,6 +436,9 @@ class RealtimeMedicalMonitoring {
         this.updateElement('status-value', 'Норма');
         this.updateElement('status-description', 'Мониторинг остановлен');
         
+        this.history = this.emptyHistory();
+        ['heartrate-sparkline', 'temperature-sparkline', 'spo2-sparkline'].forEach(id => this.updateElement(id, ''));
+        
         const alertsContainer = document.getElementById('alerts-container');
         if (alertsContainer) {
             alertsContainer.innerHTML = '<div class="text-muted text-center">Нет активных уведомлений</div>';
@@ -412,7 +512,8 @@ document.addEventListener('DOMContentLoaded', function() {
     const patientId = getPatientIdFromPage();
     
     if (patientId) {
-        medicalMonitoring = new RealtimeMedicalMonitoring(patientId);
+        const binaryFrames = new URLSearchParams(window.location.search).get('format') === 'binary';
+        medicalMonitoring = new RealtimeMedicalMonitoring(patientId, { binaryFrames });
     }
 });
 
@@ -443,4 +544,44 @@ function getPatientIdFromPage() {
     }
     
     return 1001;
+}
+
+// Декодирует компактный бинарный кадр показателей (см. VitalsFrameCodec), переданный в Base64
+function decodeVitalsFrame(base64) {
+    const binary = atob(base64);
+    const bytes = new Uint8Array(binary.length);
+    for (let i = 0; i < binary.length; i++) {
+        bytes[i] = binary.charCodeAt(i);
+    }
+    const view = new DataView(bytes.buffer);
+
+    if (view.getUint8(0) !== 2) {
+        throw new Error('Unsupported vitals frame version: ' + view.getUint8(0));
+    }
+
+    let offset = 1;
+    let patientId = 0;
+    let multiplier = 1;
+    let current;
+    do {
+        current = view.getUint8(offset++);
+        patientId += (current & 0x7F) * multiplier;
+        multiplier *= 128;
+    } while (current & 0x80);
+
+    // Локальное время сервера без часового пояса: та же ISO-строка, что и у LocalDateTime в JSON-кадрах
+    const wallClockMillis = view.getUint32(offset) * 4294967296 + view.getUint32(offset + 4);
+    const timestamp = new Date(wallClockMillis).toISOString().slice(0, -1);
+    offset += 8;
+    const heartrate = view.getUint16(offset);
+    const temperatureTenths = view.getUint16(offset + 2);
+    const spo2 = view.getUint8(offset + 4);
+
+    return {
+        patientId: patientId,
+        timestamp: timestamp,
+        heartrate: heartrate !== 0xFFFF ? heartrate : null,
+        temperature: temperatureTenths !== 0xFFFF ? temperatureTenths / 10 : null,
+        spo2: spo2 !== 0xFF ? spo2 : null
+    };
 }
\ No newline at end of file